@@ -23,24 +23,58 @@
  */
 package org.silverpeas.tools.dbBuilder.wysiwyg.adjustment;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.silverpeas.tools.util.ReportWriter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * User: Yohann Chastagnier
  * Date: 26/02/14
+ * <p>
+ * The lines are kept in memory until their estimated size crosses a threshold (the
+ * componentLogsThreshold system property, in bytes, 64 MB by default). From then, the lines are
+ * spilled into a temporary file segment which is streamed back when the lines are written.
  */
 public class ComponentLogs {
 
+  private static final long DEFAULT_THRESHOLD = 64L * 1024 * 1024;
+  private static final int LINE_OVERHEAD = 64;
+
   private final String componentId;
+  private final File spoolDirectory;
+  private final Charset charset;
+  private final long threshold;
   private final List<String> lines = new ArrayList<String>();
+  private long size = 0;
+  private File segment;
+  private ReportWriter segmentWriter;
 
   /**
    * Default constructor.
    * @param componentId the identifier of the component.
    */
   public ComponentLogs(String componentId) {
+    this(componentId, null, Charset.defaultCharset());
+  }
+
+  /**
+   * @param componentId the identifier of the component.
+   * @param spoolDirectory the directory of the temporary file segment, the default temporary
+   * directory if null.
+   * @param charset the charset of the lines once written.
+   */
+  public ComponentLogs(String componentId, File spoolDirectory, Charset charset) {
     this.componentId = componentId;
+    this.spoolDirectory = spoolDirectory;
+    this.charset = charset;
+    this.threshold = Long.getLong("componentLogsThreshold", DEFAULT_THRESHOLD);
   }
 
   /**
@@ -55,15 +89,61 @@ public class ComponentLogs {
    * Add a line linked with the component handled by this class instance.
    * @param line
    */
-  public void addLine(String line) {
+  public void addLine(String line) throws IOException {
+    if (segmentWriter != null) {
+      segmentWriter.append(line).append('\n');
+      return;
+    }
     lines.add(line);
+    size += LINE_OVERHEAD + 2L * line.length();
+    if (size > threshold) {
+      spill();
+    }
   }
 
   /**
-   * Gets the log lines associated to the component.
-   * @return
+   * Writes the log lines associated to the component, each one followed by a line feed, and
+   * releases the temporary file segment if any.
+   * @param output the output of the lines
+   */
+  public void writeTo(ReportWriter output) throws IOException {
+    if (segment == null) {
+      for (String line : lines) {
+        output.append(line).append('\n');
+      }
+      return;
+    }
+    try {
+      segmentWriter.close();
+      output.appendFile(segment);
+    } finally {
+      discard();
+    }
+  }
+
+  /**
+   * Releases the lines and the temporary file segment without writing them.
+   */
+  public void discard() {
+    lines.clear();
+    size = 0;
+    IOUtils.closeQuietly(segmentWriter);
+    segmentWriter = null;
+    FileUtils.deleteQuietly(segment);
+    segment = null;
+  }
+
+  /**
+   * Moves the lines kept in memory into a new temporary file segment, the next lines being
+   * appended to it.
    */
-  public List<String> getLines() {
-    return lines;
+  private void spill() throws IOException {
+    segment = File.createTempFile("cl-" + componentId, ".tmp", spoolDirectory);
+    segmentWriter = new ReportWriter(new FileOutputStream(segment), charset);
+    for (String line : lines) {
+      segmentWriter.append(line).append('\n');
+    }
+    lines.clear();
+    size = 0;
   }
 }
@@ -24,23 +24,35 @@
 package org.silverpeas.tools.dbBuilder.wysiwyg.adjustment;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.lang3.ArrayUtils;
+import org.silverpeas.tools.dbBuilder.wysiwyg.adjustment.ParsedLine.Location;
+import org.silverpeas.tools.dbBuilder.wysiwyg.adjustment.ParsedLine.Marker;
+import org.silverpeas.tools.dbBuilder.wysiwyg.adjustment.StatisticsExporter.Column;
+import org.silverpeas.tools.util.Compression;
 import org.silverpeas.tools.util.Config;
-import org.silverpeas.tools.util.MapUtil;
+import org.silverpeas.tools.util.IdDictionary;
+import org.silverpeas.tools.util.IntTupleSet;
+import org.silverpeas.tools.util.ReportWriter;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 import static org.apache.commons.lang3.StringUtils.defaultString;
@@ -53,47 +65,51 @@ import static org.silverpeas.tools.util.StringUtil.concatValues;
 public class DataWiring {
   private final File dbBuilderLogs;
 
-  private final static Pattern REGEXP_COMPONENT_ID = Pattern.compile("(?i)([a-z]+[0-9]+)");
-  private final static Pattern REGEXP_SIMPLEDOC_ID = Pattern.compile("(?i)(simpledoc_[0-9]+)");
-  private final static Pattern REGEXP_WYSIWYG_BASENAME =
-      Pattern.compile("(?i)([a-z_]*[0-9]+wysiwyg)");
-  private final static Pattern REGEXP_WYSIWYG_NAME =
-      Pattern.compile("(?i)([a-z_]*[0-9]+wysiwyg[^ \\\\/]+)");
-
-  private final static Pattern REGEXP_PATH_LANGUAGE =
-      Pattern.compile("(?i)[\\\\/]([a-z]{2})[\\\\/]");
-  private final static Pattern REGEXP_WYSIWYG_LANGUAGE =
-      Pattern.compile("(?i)wysiwyg_([a-z]{2}|)\\.txt");
-
   public final static Pattern REGEXP_NEW_COMPONENT_DETECTOR =
       Pattern.compile("(?i)Starting wysiwyg adjustment for component instance id ([a-z]+[0-9]+)");
   public final static Pattern REGEXP_END_COMPONENT_DETECTOR =
       Pattern.compile("(?i)Finishing wysiwyg adjustment for component instance id ([a-z]+[0-9]+)");
-  private final static Pattern REGEXP_OPERATION = Pattern
-      .compile("(?i)([a-z]+[0-9]+)[\\\\/](simpledoc_[0-9]+)[^ ]+[\\\\/]([a-z_]*[0-9]+wysiwyg)");
-  private final static Pattern REGEXP_OPERATION_WYSIWYG_ALL =
-      Pattern.compile("(?i)[\\\\/]([a-z_]*[0-9]+wysiwyg[^ ]+)");
-  private final static Pattern REGEXP_BACKUP =
-      Pattern.compile("(?i)([a-z]+[0-9]+)[\\\\/](simpledoc_[0-9]+)");
-
-  private Set<String> components = new HashSet<String>();
-  private Map<String, Set<String>> componentSimpledocs = new LinkedHashMap<String, Set<String>>();
-  private Map<String, Set<String>> componentWysiwygBasenames =
-      new LinkedHashMap<String, Set<String>>();
-  private Map<String, Set<String>> wysiwygBasenamesComponents =
-      new LinkedHashMap<String, Set<String>>();
-  private Map<String, Map<String, Set<String>>> componentBadWysiwygNamesSimpleDoc =
-      new LinkedHashMap<String, Map<String, Set<String>>>();
-  private Set<String> deletedSimpleDocs = new HashSet<String>();
-  private Map<String, Map<String, Set<String>>> componentMergedWysiwygSimpledocs =
-      new LinkedHashMap<String, Map<String, Set<String>>>();
-  private Map<String, Map<String, Set<String>>> componentRenamedWysiwygSimpledocs =
-      new LinkedHashMap<String, Map<String, Set<String>>>();
-  private Map<String, Map<String, Set<String>>> componentCopiedWysiwygSimpledocs =
-      new LinkedHashMap<String, Map<String, Set<String>>>();
-  private Map<String, Map<String, Set<String>>> componentTranslatedWysiwygSimpledocs =
-      new LinkedHashMap<String, Map<String, Set<String>>>();
-  private Set<String> translatedSimpleDocs = new HashSet<String>();
+
+  private final static Pattern VERIFY_COMPONENT_ID = Pattern.compile("(?i)^[a-z]+[0-9]+$");
+  private final static Pattern VERIFY_SIMPLEDOC_ID = Pattern.compile("(?i)^simpledoc_[0-9]+$");
+  private final static Pattern VERIFY_WYSIWYG_BASENAME = Pattern.compile("(?i)^.+wysiwyg$");
+
+  private static final int NONE = -1;
+
+  private final List<String> messages;
+  private RuntimeException failure;
+
+  // The positions of the values of a relation tuple: the component, the wysiwyg relation (the
+  // language and the wysiwyg name of the source then of the target) and the simpledoc relation
+  private static final int RELATION_ARITY = 7;
+  private static final int RELATION_PREFIX = 5;
+  private static final int SOURCE_SIMPLEDOC = 5;
+  private static final int TARGET_SIMPLEDOC = 6;
+
+  private Set<String> components;
+  private IntTupleSet[] componentSimpledocs = new IntTupleSet[0];
+  private IntTupleSet[] componentWysiwygBasenames = new IntTupleSet[0];
+  private IntTupleSet wysiwygBasenamesComponents = new IntTupleSet(2);
+  private IntTupleSet componentBadWysiwygNamesSimpleDoc = new IntTupleSet(3);
+  private BitSet deletedSimpleDocs = new BitSet();
+  private IntTupleSet componentMergedWysiwygSimpledocs = new IntTupleSet(RELATION_ARITY);
+  private IntTupleSet componentRenamedWysiwygSimpledocs = new IntTupleSet(RELATION_ARITY);
+  private IntTupleSet componentCopiedWysiwygSimpledocs = new IntTupleSet(RELATION_ARITY);
+  private IntTupleSet componentTranslatedWysiwygSimpledocs = new IntTupleSet(RELATION_ARITY);
+  private BitSet translatedSimpleDocs = new BitSet();
+  private BitSet closedComponents = new BitSet();
+  private int[][] simpleDocComponents = new int[0][];
+  private int[][] componentSingletons = new int[0][];
+
+  // The identifiers are dictionary encoded: the structures above contain the handles of the
+  // identifiers. The sets of a component are indexed by the handle of the component, and the
+  // relations between identifiers are tuples of handles kept in their insertion order, which are
+  // grouped by the first appearance of their identifiers when the report is written
+  private final IdDictionary componentDictionary = new IdDictionary();
+  private final IdDictionary simpleDocDictionary = new IdDictionary();
+  private final IdDictionary wysiwygBasenameDictionary = new IdDictionary();
+  private final IdDictionary wysiwygNameDictionary = new IdDictionary();
+  private final IdDictionary languageDictionary = new IdDictionary();
 
   /**
    * @param dbBuilderLogs the path (with filename) of dbBuilder.log
@@ -108,14 +124,31 @@ public class DataWiring {
    * @param dbBuilderLogs the path (with filename) of dbBuilder.log
    */
   private DataWiring(File dbBuilderLogs) {
+    this(dbBuilderLogs, false);
+  }
+
+  /**
+   * @param dbBuilderLogs the path (with filename) of dbBuilder.log
+   * @param partial true if the instance wires a part of the file only, to be merged afterwards
+   * into the wiring of the whole file: its set of components keeps the insertion order and its
+   * messages are kept until the merge.
+   */
+  private DataWiring(File dbBuilderLogs, boolean partial) {
     this.dbBuilderLogs = dbBuilderLogs;
+    this.messages = partial ? new ArrayList<String>() : null;
+    this.components = partial ? new LinkedHashSet<String>() : new HashSet<String>();
   }
 
   /**
    * Executing treatments
    */
   private DataWiring execute() throws Exception {
-    BufferedReader dbBuilderLogsReader = IOUtils.toBufferedReader(new FileReader(dbBuilderLogs));
+    int nbThreads = Integer.getInteger("wiringThreads", 1);
+    // The ranges of a compressed log cannot be reached directly: it is wired sequentially
+    if (nbThreads > 1 && Compression.of(dbBuilderLogs) == Compression.NONE) {
+      return executeInParallel(nbThreads);
+    }
+    BufferedReader dbBuilderLogsReader = Compression.openReader(dbBuilderLogs);
     try {
       String line = "initialisation to start ...";
       do {
@@ -127,10 +160,7 @@ public class DataWiring {
           break;
         }
 
-        performCommon(line);
-        performStartingOrEnding(line);
-        performOperation(line);
-        performBackup(line);
+        wire(line);
 
       } while (true);
     } finally {
@@ -139,197 +169,349 @@ public class DataWiring {
     return this;
   }
 
-  private boolean performCommon(String line) {
+  /**
+   * Executing treatments by splitting dbBuilder.log into ranges of bytes aligned on the line
+   * endings, each range being wired by a thread into a partial wiring. The partial wirings are
+   * merged in the order of the ranges by replaying their insertions, so the wiring (and so the
+   * statistics, the messages and the first error) is the same as the one of a sequential
+   * execution.
+   * @param nbThreads the number of threads
+   */
+  private DataWiring executeInParallel(int nbThreads) throws Exception {
+    List<Long> boundaries = splitIntoRanges(nbThreads);
+    ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+    try {
+      List<Future<DataWiring>> partials = new ArrayList<Future<DataWiring>>();
+      for (int i = 1; i < boundaries.size(); i++) {
+        final long start = boundaries.get(i - 1);
+        final long end = boundaries.get(i);
+        partials.add(executor.submit(new Callable<DataWiring>() {
+          @Override
+          public DataWiring call() throws Exception {
+            return wireRange(start, end);
+          }
+        }));
+      }
+      for (Future<DataWiring> partial : partials) {
+        merge(partial.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return this;
+  }
+
+  /**
+   * Gets the boundaries of the ranges of bytes, each one except the first being positioned just
+   * after a line feed.
+   */
+  private List<Long> splitIntoRanges(int nbRanges) throws IOException {
+    List<Long> boundaries = new ArrayList<Long>();
+    boundaries.add(0L);
+    RandomAccessFile file = new RandomAccessFile(dbBuilderLogs, "r");
+    try {
+      long size = file.length();
+      for (int i = 1; i < nbRanges; i++) {
+        long boundary = Math.max(size * i / nbRanges, boundaries.get(boundaries.size() - 1));
+        file.seek(boundary);
+        int read;
+        while ((read = file.read()) >= 0 && read != '\n') {
+          boundary++;
+        }
+        boundary = Math.min(boundary + 1, size);
+        if (boundary > boundaries.get(boundaries.size() - 1)) {
+          boundaries.add(boundary);
+        }
+      }
+      if (size > boundaries.get(boundaries.size() - 1)) {
+        boundaries.add(size);
+      }
+    } finally {
+      IOUtils.closeQuietly(file);
+    }
+    return boundaries;
+  }
+
+  /**
+   * Wires the lines of a range of bytes into a partial wiring. The first error stops the wiring
+   * of the range and is kept with the partial wiring, to be thrown at its merge.
+   */
+  private DataWiring wireRange(long start, long end) throws IOException {
+    DataWiring partial = new DataWiring(dbBuilderLogs, true);
+    FileInputStream rangeIS = new FileInputStream(dbBuilderLogs);
+    try {
+      rangeIS.getChannel().position(start);
+      BufferedReader rangeReader = IOUtils.toBufferedReader(
+          new InputStreamReader(new BoundedInputStream(rangeIS, end - start),
+              Charset.defaultCharset()));
+      String line;
+      while ((line = rangeReader.readLine()) != null) {
+        partial.wire(line);
+      }
+    } catch (RuntimeException e) {
+      partial.failure = e;
+    } finally {
+      IOUtils.closeQuietly(rangeIS);
+    }
+    return partial;
+  }
+
+  /**
+   * Merges a partial wiring, the partial wirings being merged in the order of their ranges.
+   */
+  private void merge(DataWiring partial) {
+    for (String message : partial.messages) {
+      System.out.println(message);
+    }
+    for (String componentId : partial.components) {
+      addComponent(componentId);
+    }
+    componentSimpledocs = mergeSets(componentSimpledocs, partial.componentSimpledocs,
+        simpleDocDictionary, partial.simpleDocDictionary, partial.componentDictionary);
+    for (int handle = 0; handle < partial.simpleDocComponents.length; handle++) {
+      int[] componentHandles = partial.simpleDocComponents[handle];
+      if (componentHandles != null) {
+        for (int componentHandle : componentHandles) {
+          putSimpleDocComponent(
+              componentDictionary.encode(partial.componentDictionary.decode(componentHandle)),
+              simpleDocDictionary.encode(partial.simpleDocDictionary.decode(handle)));
+        }
+      }
+    }
+    componentWysiwygBasenames = mergeSets(componentWysiwygBasenames,
+        partial.componentWysiwygBasenames, wysiwygBasenameDictionary,
+        partial.wysiwygBasenameDictionary, partial.componentDictionary);
+    mergeTuples(wysiwygBasenamesComponents, partial.wysiwygBasenamesComponents,
+        new IdDictionary[]{wysiwygBasenameDictionary, componentDictionary},
+        new IdDictionary[]{partial.wysiwygBasenameDictionary, partial.componentDictionary});
+    mergeTuples(componentBadWysiwygNamesSimpleDoc, partial.componentBadWysiwygNamesSimpleDoc,
+        new IdDictionary[]{componentDictionary, wysiwygBasenameDictionary, simpleDocDictionary},
+        new IdDictionary[]{partial.componentDictionary, partial.wysiwygBasenameDictionary,
+            partial.simpleDocDictionary});
+    mergeSimpleDocs(deletedSimpleDocs, partial.deletedSimpleDocs, partial.simpleDocDictionary);
+    mergeRelations(componentMergedWysiwygSimpledocs, partial.componentMergedWysiwygSimpledocs,
+        partial);
+    mergeRelations(componentRenamedWysiwygSimpledocs, partial.componentRenamedWysiwygSimpledocs,
+        partial);
+    mergeRelations(componentCopiedWysiwygSimpledocs, partial.componentCopiedWysiwygSimpledocs,
+        partial);
+    mergeRelations(componentTranslatedWysiwygSimpledocs,
+        partial.componentTranslatedWysiwygSimpledocs, partial);
+    mergeSimpleDocs(translatedSimpleDocs, partial.translatedSimpleDocs,
+        partial.simpleDocDictionary);
+    if (partial.failure != null) {
+      throw partial.failure;
+    }
+  }
+
+  private void mergeSimpleDocs(BitSet simpleDocs, BitSet partialSimpleDocs,
+      IdDictionary partialSimpleDocDictionary) {
+    for (int handle = partialSimpleDocs.nextSetBit(0); handle >= 0;
+         handle = partialSimpleDocs.nextSetBit(handle + 1)) {
+      simpleDocs.set(simpleDocDictionary.encode(partialSimpleDocDictionary.decode(handle)));
+    }
+  }
+
+  private IntTupleSet[] mergeSets(IntTupleSet[] sets, IntTupleSet[] partialSets,
+      IdDictionary dictionary, IdDictionary partialDictionary,
+      IdDictionary partialComponentDictionary) {
+    for (int partialHandle = 0; partialHandle < partialSets.length; partialHandle++) {
+      IntTupleSet partialSet = partialSets[partialHandle];
+      if (partialSet != null) {
+        int handle = componentDictionary.encode(partialComponentDictionary.decode(partialHandle));
+        for (int i = 0; i < partialSet.size(); i++) {
+          sets = putAddSet(sets, handle,
+              dictionary.encode(partialDictionary.decode(partialSet.get(i, 0))));
+        }
+      }
+    }
+    return sets;
+  }
+
+  private void mergeRelations(IntTupleSet relations, IntTupleSet partialRelations,
+      DataWiring partial) {
+    mergeTuples(relations, partialRelations, getRelationDictionaries(),
+        partial.getRelationDictionaries());
+  }
+
+  /**
+   * Adds the tuples of a partial wiring in their insertion order, each value being encoded again
+   * with the dictionary of its position.
+   */
+  private static void mergeTuples(IntTupleSet tuples, IntTupleSet partialTuples,
+      IdDictionary[] dictionaries, IdDictionary[] partialDictionaries) {
+    int[] tuple = new int[tuples.getArity()];
+    for (int index = 0; index < partialTuples.size(); index++) {
+      for (int field = 0; field < tuple.length; field++) {
+        int partialHandle = partialTuples.get(index, field);
+        tuple[field] = partialHandle == NONE ? NONE :
+            dictionaries[field].encode(partialDictionaries[field].decode(partialHandle));
+      }
+      tuples.add(tuple);
+    }
+  }
+
+  /**
+   * Gets the dictionaries of the values of a relation tuple.
+   */
+  private IdDictionary[] getRelationDictionaries() {
+    return new IdDictionary[]{componentDictionary, languageDictionary, wysiwygNameDictionary,
+        languageDictionary, wysiwygNameDictionary, simpleDocDictionary, simpleDocDictionary};
+  }
+
+  /**
+   * Gets an empty wiring, fed line by line with {@link #wire(String)} by the caller which reads
+   * the dbBuilder.log file itself.
+   * @param dbBuilderLogs the path (with filename) of dbBuilder.log
+   * @return the empty instance
+   */
+  static DataWiring init(File dbBuilderLogs) {
+    return new DataWiring(dbBuilderLogs);
+  }
+
+  /**
+   * Wires the data of a line.
+   * @param line a line of dbBuilder.log
+   * @return the parsed line
+   */
+  ParsedLine wire(String line) {
+    ParsedLine parsedLine = ParsedLine.parse(line);
+    performCommon(parsedLine);
+    performStartingOrEnding(parsedLine);
+    performOperation(parsedLine);
+    performBackup(parsedLine);
+    return parsedLine;
+  }
+
+  private boolean performCommon(ParsedLine line) {
     boolean result = false;
-    if (line.contains("has been deleted")) {
-      Matcher matcher = REGEXP_SIMPLEDOC_ID.matcher(line);
-      matcher.find();
-      deletedSimpleDocs.add(matcher.group(1));
+    if (line.contains(Marker.DELETED)) {
+      deletedSimpleDocs.set(simpleDocDictionary.encode(get(line.getSimpleDocIds(), 0, line)));
       result = true;
-    } else if (line.contains("with the right language suffix")) {
-      Matcher componentMatcher = REGEXP_COMPONENT_ID.matcher(line);
-      Matcher wysiwygMatcher = REGEXP_WYSIWYG_NAME.matcher(line);
-      Matcher simpleDocMatcher = REGEXP_SIMPLEDOC_ID.matcher(line);
-      componentMatcher.find();
-      wysiwygMatcher.find();
-      simpleDocMatcher.find();
-      String componentId = componentMatcher.group(1);
-      Map<String, Set<String>> renamedWysiwygSimpledoc =
-          componentRenamedWysiwygSimpledocs.get(componentId);
-      if (renamedWysiwygSimpledoc == null) {
-        renamedWysiwygSimpledoc = new LinkedHashMap<String, Set<String>>();
-        componentRenamedWysiwygSimpledocs.put(componentId, renamedWysiwygSimpledoc);
-      }
-      Matcher pathLanguageMatcher = REGEXP_PATH_LANGUAGE.matcher(line);
-      pathLanguageMatcher.find();
-      String renameLog =
-          "original path " + pathLanguageMatcher.group(1) + ", file " + wysiwygMatcher.group(1) +
-              " to ";
-      wysiwygMatcher.find();
-      MapUtil.putAddSet(renamedWysiwygSimpledoc, renameLog + wysiwygMatcher.group(1),
-          simpleDocMatcher.group(1));
+    } else if (line.contains(Marker.RIGHT_LANGUAGE_SUFFIX)) {
+      int componentHandle = componentDictionary.encode(get(line.getComponentIds(), 0, line));
+      componentRenamedWysiwygSimpledocs.add(componentHandle,
+          languageDictionary.encode(get(line.getPathLanguages(), 0, line)),
+          getWysiwygName(line, 0), NONE, getWysiwygName(line, 1),
+          simpleDocDictionary.encode(get(line.getSimpleDocIds(), 0, line)), NONE);
       result = true;
     }
     return result;
   }
 
-  private boolean performStartingOrEnding(String line) {
+  private boolean performStartingOrEnding(ParsedLine line) {
     boolean result = false;
-    Matcher matcher = REGEXP_NEW_COMPONENT_DETECTOR.matcher(line);
-    while (matcher.find()) {
-      components.add(verifyComponentId(matcher.group(1), line));
+    for (String componentId : line.getStartedComponentIds()) {
+      addComponent(verifyComponentId(componentId, line));
       result = true;
     }
-    matcher = REGEXP_END_COMPONENT_DETECTOR.matcher(line);
-    while (matcher.find()) {
-      components.add(verifyComponentId(matcher.group(1), line));
+    for (String componentId : line.getEndedComponentIds()) {
+      addComponent(verifyComponentId(componentId, line));
       result = true;
     }
     return result;
   }
 
-  private boolean performOperation(String line) {
+  private boolean performOperation(ParsedLine line) {
     boolean result = false;
-    Matcher matcher = REGEXP_OPERATION.matcher(line);
-    Matcher pathLanguageMatcher = REGEXP_PATH_LANGUAGE.matcher(line);
-    Matcher wysiwygLanguageMatcher = REGEXP_WYSIWYG_LANGUAGE.matcher(line);
     String componentId = "dummy";
-    String wysiwygBasename = "dummy";
-    Set<String> simpleDocIds = new LinkedHashSet<String>();
+    int componentHandle = NONE;
+    int wysiwygBasenameHandle = NONE;
+    IntTupleSet simpleDocHandles = new IntTupleSet(1);
     List<String> pathLanguages = new ArrayList<String>();
     List<String> wysiwygLanguages = new ArrayList<String>();
-    while (matcher.find()) {
-      pathLanguageMatcher.find();
-      pathLanguages.add(pathLanguageMatcher.group(1));
-      if (wysiwygLanguageMatcher.find()) {
+    List<Location> operations = line.getOperations();
+    for (int i = 0; i < operations.size(); i++) {
+      Location operation = operations.get(i);
+      pathLanguages.add(get(line.getPathLanguages(), i, line));
+      if (i < line.getWysiwygLanguages().size()) {
         wysiwygLanguages
-            .add(defaultString(wysiwygLanguageMatcher.group(1), Config.defaultLanguage));
+            .add(defaultString(line.getWysiwygLanguages().get(i), Config.defaultLanguage));
       } else {
-        System.out.println("No language extension: " + line);
+        print("No language extension: " + line.getLine());
         wysiwygLanguages.add(Config.defaultLanguage);
       }
 
-      componentId = verifyComponentId(matcher.group(1), line);
-      components.add(componentId);
+      componentId = verifyComponentId(operation.componentId, line);
+      componentHandle = addComponent(componentId);
 
-      String simpleDocId = verifySimpleDocId(matcher.group(2), line);
-      simpleDocIds.add(simpleDocId);
-      MapUtil.putAddSet(componentSimpledocs, componentId, simpleDocId);
+      int simpleDocHandle =
+          simpleDocDictionary.encode(verifySimpleDocId(operation.simpleDocId, line));
+      simpleDocHandles.add(simpleDocHandle);
+      putComponentSimpledoc(componentHandle, simpleDocHandle);
 
-      wysiwygBasename = verifyWysiwygBasename(matcher.group(3), line);
-      MapUtil.putAddSet(componentWysiwygBasenames, componentId, wysiwygBasename);
-      MapUtil.putAddSet(wysiwygBasenamesComponents, wysiwygBasename, componentId);
+      wysiwygBasenameHandle = wysiwygBasenameDictionary
+          .encode(verifyWysiwygBasename(operation.wysiwygBasename, line));
+      componentWysiwygBasenames =
+          putAddSet(componentWysiwygBasenames, componentHandle, wysiwygBasenameHandle);
+      wysiwygBasenamesComponents.add(wysiwygBasenameHandle, componentHandle);
 
       result = true;
     }
 
     if (result) {
-      matcher = REGEXP_OPERATION_WYSIWYG_ALL.matcher(line);
-      if (matcher.find()) {
-        String wysiwygName = matcher.group(1);
-        if (matcher.find()) {
-          boolean isMerged = line.contains("has been merged into");
-          boolean isTranslated = line.contains("into right location language");
-
-          if (wysiwygName.equals(matcher.group(1))) {
-            boolean isCopied = line.contains("has been copied into");
+      List<String> operationWysiwygNames = line.getOperationWysiwygNames();
+      if (!operationWysiwygNames.isEmpty()) {
+        String wysiwygName = operationWysiwygNames.get(0);
+        if (operationWysiwygNames.size() > 1) {
+          boolean isMerged = line.contains(Marker.MERGED);
+          boolean isTranslated = line.contains(Marker.TRANSLATED);
+          int simpleDocFrom = simpleDocHandles.get(0, 0);
+          int simpleDocTo = simpleDocHandles.size() > 1 ? simpleDocHandles.get(1, 0) : NONE;
+
+          if (wysiwygName.equals(operationWysiwygNames.get(1))) {
+            boolean isCopied = line.contains(Marker.COPIED);
             boolean isNonFrTagAsFrToMerge = !pathLanguages.get(0).equals(Config.defaultLanguage);
             boolean isKmeliaPotentialBadDelete =
-                componentId.startsWith("kmelia") && simpleDocIds.size() > 1 &&
+                componentId.startsWith("kmelia") && simpleDocHandles.size() > 1 &&
                     pathLanguages.get(0).equals(pathLanguages.get(1)) &&
-                    line.contains("has not been merged into the target");
+                    line.contains(Marker.NOT_MERGED);
             if (isNonFrTagAsFrToMerge || isKmeliaPotentialBadDelete) {
-              Map<String, Set<String>> potentialBadSimpleDocWysiwygNames =
-                  componentBadWysiwygNamesSimpleDoc.get(componentId);
-              if (potentialBadSimpleDocWysiwygNames == null) {
-                potentialBadSimpleDocWysiwygNames = new LinkedHashMap<String, Set<String>>();
+              for (int i = 0; i < simpleDocHandles.size(); i++) {
                 componentBadWysiwygNamesSimpleDoc
-                    .put(componentId, potentialBadSimpleDocWysiwygNames);
-              }
-              for (String simpleDocId : simpleDocIds) {
-                MapUtil.putAddSet(potentialBadSimpleDocWysiwygNames, wysiwygBasename, simpleDocId);
+                    .add(componentHandle, wysiwygBasenameHandle, simpleDocHandles.get(i, 0));
               }
             }
             if (isCopied) {
-              Matcher wysiwygMatcher = REGEXP_WYSIWYG_NAME.matcher(line);
-              Map<String, Set<String>> copiedWysiwygSimpledoc =
-                  componentCopiedWysiwygSimpledocs.get(componentId);
-              if (copiedWysiwygSimpledoc == null) {
-                copiedWysiwygSimpledoc = new LinkedHashMap<String, Set<String>>();
-                componentCopiedWysiwygSimpledocs.put(componentId, copiedWysiwygSimpledoc);
-              }
-              wysiwygMatcher.find();
-              String copiedLog =
-                  "path " + pathLanguages.get(0) + ", file " + wysiwygMatcher.group(1) +
-                      " to path " + pathLanguages.get(1) + ", file ";
-              wysiwygMatcher.find();
-              Iterator<String> simpleDocIt = simpleDocIds.iterator();
-              MapUtil.putAddSet(copiedWysiwygSimpledoc, copiedLog + wysiwygMatcher.group(1),
-                  (simpleDocIt.next() + " -> " + simpleDocIt.next()));
+              addRelation(componentCopiedWysiwygSimpledocs, componentHandle, line, pathLanguages,
+                  simpleDocFrom, get(simpleDocTo, line));
             }
           }
           if (isTranslated) {
-            Matcher wysiwygMatcher = REGEXP_WYSIWYG_NAME.matcher(line);
-            Map<String, Set<String>> translatedWysiwygSimpledoc =
-                componentTranslatedWysiwygSimpledocs.get(componentId);
-            if (translatedWysiwygSimpledoc == null) {
-              translatedWysiwygSimpledoc = new LinkedHashMap<String, Set<String>>();
-              componentTranslatedWysiwygSimpledocs.put(componentId, translatedWysiwygSimpledoc);
+            if (simpleDocTo == NONE) {
+              simpleDocTo = simpleDocFrom;
             }
-            wysiwygMatcher.find();
-            String translatedLog =
-                "path " + pathLanguages.get(0) + ", file " + wysiwygMatcher.group(1) +
-                    " to path " + pathLanguages.get(1) + ", file ";
-            wysiwygMatcher.find();
-            Iterator<String> simpleDocIt = simpleDocIds.iterator();
-            String simpleDocFrom = simpleDocIt.next();
-            String simpleDocTo = simpleDocIt.hasNext() ? simpleDocIt.next() : simpleDocFrom;
-            translatedSimpleDocs.add(simpleDocFrom);
-            translatedSimpleDocs.add(simpleDocTo);
-            MapUtil.putAddSet(translatedWysiwygSimpledoc, translatedLog + wysiwygMatcher.group(1),
-                (simpleDocFrom + " -> " + simpleDocTo));
+            translatedSimpleDocs.set(simpleDocFrom);
+            translatedSimpleDocs.set(simpleDocTo);
+            addRelation(componentTranslatedWysiwygSimpledocs, componentHandle, line,
+                pathLanguages, simpleDocFrom, simpleDocTo);
           }
 
           if (isMerged) {
-            Matcher wysiwygMatcher = REGEXP_WYSIWYG_NAME.matcher(line);
-            Map<String, Set<String>> mergedWysiwygSimpledoc =
-                componentMergedWysiwygSimpledocs.get(componentId);
-            if (mergedWysiwygSimpledoc == null) {
-              mergedWysiwygSimpledoc = new LinkedHashMap<String, Set<String>>();
-              componentMergedWysiwygSimpledocs.put(componentId, mergedWysiwygSimpledoc);
-            }
-            wysiwygMatcher.find();
-            String mergedLog =
-                "path " + pathLanguages.get(0) + ", file " + wysiwygMatcher.group(1) +
-                    " to path " + pathLanguages.get(1) + ", file ";
-            wysiwygMatcher.find();
-            Iterator<String> simpleDocIt = simpleDocIds.iterator();
-            MapUtil.putAddSet(mergedWysiwygSimpledoc, mergedLog + wysiwygMatcher.group(1),
-                (simpleDocIt.next() + " -> " + simpleDocIt.next()));
+            addRelation(componentMergedWysiwygSimpledocs, componentHandle, line, pathLanguages,
+                simpleDocFrom, get(simpleDocTo, line));
           }
-        } else if (!line.contains("will be deleted from the JCR") &&
-            !line.contains("with the right language suffix") &&
-            !line.contains("will be renamed with right language suffix")) {
-          System.out.println(wysiwygName + " - " + line);
+        } else if (!line.contains(Marker.JCR_DELETION) &&
+            !line.contains(Marker.RIGHT_LANGUAGE_SUFFIX) && !line.contains(Marker.RENAMING)) {
+          print(wysiwygName + " - " + line.getLine());
         }
       } else {
-        throw new IllegalArgumentException("Wysiwyg not found on line : " + line);
+        throw new IllegalArgumentException("Wysiwyg not found on line : " + line.getLine());
       }
     }
 
     return result;
   }
 
-  private boolean performBackup(String line) {
+  private boolean performBackup(ParsedLine line) {
     boolean result = false;
-    if (line.contains("Physical backup has been performed for directory")) {
-      Matcher matcher = REGEXP_BACKUP.matcher(line);
-      while (matcher.find()) {
-        String componentId = verifyComponentId(matcher.group(1), line);
-        components.add(componentId);
+    if (line.contains(Marker.BACKUP)) {
+      for (Location backup : line.getBackups()) {
+        int componentHandle = addComponent(verifyComponentId(backup.componentId, line));
 
-        String simpleDocId = verifySimpleDocId(matcher.group(2), line);
-        MapUtil.putAddSet(componentSimpledocs, componentId, simpleDocId);
+        int simpleDocHandle =
+            simpleDocDictionary.encode(verifySimpleDocId(backup.simpleDocId, line));
+        putComponentSimpledoc(componentHandle, simpleDocHandle);
 
         result = true;
       }
@@ -337,163 +519,432 @@ public class DataWiring {
     return result;
   }
 
-  private String verifyComponentId(String componentId, String line) {
-    if (!componentId.matches("(?i)^[a-z]+[0-9]+$")) {
-      throw new IllegalArgumentException(componentId + " is not a component id (" + line + ")");
+  /**
+   * Adds a component to the wired ones.
+   * @return the handle of the component.
+   */
+  private int addComponent(String componentId) {
+    int componentHandle = componentDictionary.encode(componentId);
+    components.add(componentId);
+    return componentHandle;
+  }
+
+  /**
+   * Adds the relation between the first wysiwyg file of the line and the second one, each one
+   * being located by the language of its path, and between the given simpledocs.
+   */
+  private void addRelation(IntTupleSet relations, int componentHandle, ParsedLine line,
+      List<String> pathLanguages, int sourceSimpleDoc, int targetSimpleDoc) {
+    relations.add(componentHandle, languageDictionary.encode(pathLanguages.get(0)),
+        getWysiwygName(line, 0), languageDictionary.encode(pathLanguages.get(1)),
+        getWysiwygName(line, 1), sourceSimpleDoc, targetSimpleDoc);
+  }
+
+  private int getWysiwygName(ParsedLine line, int index) {
+    return wysiwygNameDictionary.encode(get(line.getWysiwygNames(), index, line));
+  }
+
+  /**
+   * Adds a handle into the set of a component, the array of the sets being grown if needed.
+   * @return the array of the sets.
+   */
+  private static IntTupleSet[] putAddSet(IntTupleSet[] sets, int componentHandle, int handle) {
+    if (componentHandle >= sets.length) {
+      sets = Arrays.copyOf(sets, Math.max(1024, componentHandle * 2));
+    }
+    IntTupleSet set = sets[componentHandle];
+    if (set == null) {
+      set = new IntTupleSet(1);
+      sets[componentHandle] = set;
+    }
+    set.add(handle);
+    return sets;
+  }
+
+  /**
+   * Gets the set of a component.
+   * @return the set, null if none.
+   */
+  private static IntTupleSet getSet(IntTupleSet[] sets, int componentHandle) {
+    return componentHandle != NONE && componentHandle < sets.length ? sets[componentHandle] : null;
+  }
+
+  private void print(String message) {
+    if (messages != null) {
+      messages.add(message);
+    } else {
+      System.out.println(message);
+    }
+  }
+
+  /**
+   * Gets the token at the given index of the ones extracted from a line, the line being malformed
+   * if there is no such token.
+   */
+  private static String get(List<String> tokens, int index, ParsedLine line) {
+    if (index >= tokens.size()) {
+      throw new IllegalArgumentException(
+          "Expected data not found on line : " + line.getLine());
+    }
+    return tokens.get(index);
+  }
+
+  /**
+   * Gets the handle of the second simpledoc of a line, the line being malformed if there is no
+   * such simpledoc.
+   */
+  private static int get(int simpleDocHandle, ParsedLine line) {
+    if (simpleDocHandle == NONE) {
+      throw new IllegalArgumentException(
+          "Expected data not found on line : " + line.getLine());
+    }
+    return simpleDocHandle;
+  }
+
+  private String verifyComponentId(String componentId, ParsedLine line) {
+    if (!VERIFY_COMPONENT_ID.matcher(componentId).matches()) {
+      throw new IllegalArgumentException(
+          componentId + " is not a component id (" + line.getLine() + ")");
     }
     return componentId;
   }
 
 
-  private String verifySimpleDocId(String simpleDocId, String line) {
-    if (!simpleDocId.matches("(?i)^simpledoc_[0-9]+$")) {
-      throw new IllegalArgumentException(simpleDocId + " is not a simpledoc id (" + line + ")");
+  private String verifySimpleDocId(String simpleDocId, ParsedLine line) {
+    if (!VERIFY_SIMPLEDOC_ID.matcher(simpleDocId).matches()) {
+      throw new IllegalArgumentException(
+          simpleDocId + " is not a simpledoc id (" + line.getLine() + ")");
     }
     return simpleDocId;
   }
 
-  private String verifyWysiwygBasename(String wysiwygBaseName, String line) {
-    if (!wysiwygBaseName.matches("(?i)^.+wysiwyg$")) {
+  private String verifyWysiwygBasename(String wysiwygBaseName, ParsedLine line) {
+    if (!VERIFY_WYSIWYG_BASENAME.matcher(wysiwygBaseName).matches()) {
       throw new IllegalArgumentException(
-          wysiwygBaseName + " is not a wysiwyg basename (" + line + ")");
+          wysiwygBaseName + " is not a wysiwyg basename (" + line.getLine() + ")");
     }
     return wysiwygBaseName;
   }
 
-  public void writeStatistics(FileOutputStream fileOutputStream) throws IOException {
-    IOUtils.write("###################################", fileOutputStream);
-    IOUtils.write("\nStatistics", fileOutputStream);
-    IOUtils.write("\n-----------------------------------", fileOutputStream);
-    IOUtils.write("\nNb components : " + components.size(), fileOutputStream);
-    IOUtils.write("\nPer component :", fileOutputStream);
+  public void writeStatistics(ReportWriter report) throws IOException {
+    report.append("###################################");
+    report.append("\nStatistics");
+    report.append("\n-----------------------------------");
+    report.append("\nNb components : ").append(components.size());
+    report.append("\nPer component :");
     for (String componentId : components) {
-      IOUtils.write("\n\t" + componentId, fileOutputStream);
+      report.append("\n\t").append(componentId);
+      int componentHandle = componentDictionary.find(componentId);
 
-      Set<String> simpleDocIds = componentSimpledocs.get(componentId);
-      if (simpleDocIds != null) {
-        IOUtils.write("\n\t\tnb simpledocs -> " + simpleDocIds.size(), fileOutputStream);
+      IntTupleSet simpleDocHandles = getSet(componentSimpledocs, componentHandle);
+      if (simpleDocHandles != null) {
+        report.append("\n\t\tnb simpledocs -> ").append(simpleDocHandles.size());
       }
 
-      Set<String> wysiwygBasenames = componentWysiwygBasenames.get(componentId);
-      if (wysiwygBasenames != null) {
-        IOUtils.write("\n\t\tnb wysiwyg basenames -> " + wysiwygBasenames.size(), fileOutputStream);
+      IntTupleSet wysiwygBasenameHandles = getSet(componentWysiwygBasenames, componentHandle);
+      if (wysiwygBasenameHandles != null) {
+        report.append("\n\t\tnb wysiwyg basenames -> ").append(wysiwygBasenameHandles.size());
       }
     }
 
-    IOUtils.write("\n-----------------------------------", fileOutputStream);
+    report.append("\n-----------------------------------");
 
-    IOUtils.write("\nNb simpledoc deletions : " + deletedSimpleDocs.size(), fileOutputStream);
+    report.append("\nNb simpledoc deletions : ").append(deletedSimpleDocs.cardinality());
 
-    IOUtils.write("\n-----------------------------------", fileOutputStream);
+    report.append("\n-----------------------------------");
 
     Set<String> uniqueWysiwygBasenames = new LinkedHashSet<String>();
     Set<String> uniqueComponentIds = new LinkedHashSet<String>();
     int nbWysiwygBasenamePotentialLosses = 0;
-    for (Map.Entry<String, Set<String>> entry : wysiwygBasenamesComponents.entrySet()) {
-      if (entry.getValue().size() > 1) {
+    int[] order = wysiwygBasenamesComponents.groupedOrder(1);
+    for (int start = 0, end; start < order.length; start = end) {
+      end = getGroupEnd(wysiwygBasenamesComponents, order, start, 1);
+      if (end - start > 1) {
+        String wysiwygBasename =
+            wysiwygBasenameDictionary.decode(wysiwygBasenamesComponents.get(order[start], 0));
+        Set<String> componentIds =
+            decodeSet(wysiwygBasenamesComponents, order, start, end, 1, componentDictionary);
         nbWysiwygBasenamePotentialLosses++;
-        IOUtils.write("\n" + entry.getKey() + " basename occures in several component ids (" +
-            entry.getValue().size() + "): ", fileOutputStream);
-        uniqueWysiwygBasenames.add(entry.getKey());
-        for (String componentId : entry.getValue()) {
+        report.append("\n").append(wysiwygBasename)
+            .append(" basename occures in several component ids (").append(componentIds.size())
+            .append("): ");
+        uniqueWysiwygBasenames.add(wysiwygBasename);
+        for (String componentId : componentIds) {
           uniqueComponentIds.add(componentId);
         }
-        IOUtils.write(concatValues(entry.getValue()), fileOutputStream);
+        report.appendValues(componentIds);
       }
     }
-    IOUtils.write("\nNb wysiwyg basenames ids that occures in several component ids : " +
-        nbWysiwygBasenamePotentialLosses, fileOutputStream);
-    IOUtils.write("\n--> " + concatValues(uniqueWysiwygBasenames), fileOutputStream);
-    IOUtils.write("\nNb component ids containing same wysiwyg basenames with others : " +
-        uniqueComponentIds.size(), fileOutputStream);
+    report.append("\nNb wysiwyg basenames ids that occures in several component ids : ")
+        .append(nbWysiwygBasenamePotentialLosses);
+    report.append("\n--> ").appendValues(uniqueWysiwygBasenames);
+    report.append("\nNb component ids containing same wysiwyg basenames with others : ")
+        .append(uniqueComponentIds.size());
     for (String componentId : uniqueComponentIds) {
       uniqueComponentIds.add(componentId);
     }
-    IOUtils.write("\n--> " + concatValues(uniqueComponentIds), fileOutputStream);
+    report.append("\n--> ").appendValues(uniqueComponentIds);
 
-    IOUtils.write("\n-----------------------------------", fileOutputStream);
+    report.append("\n-----------------------------------");
 
     nbWysiwygBasenamePotentialLosses = 0;
-    for (Map.Entry<String, Map<String, Set<String>>> entry : componentBadWysiwygNamesSimpleDoc
-        .entrySet()) {
-      IOUtils.write("\n" + entry.getKey(), fileOutputStream);
-      for (Map.Entry<String, Set<String>> potentialBadEntry : entry.getValue().entrySet()) {
+    int nbComponentIds = 0;
+    order = componentBadWysiwygNamesSimpleDoc.groupedOrder(1, 2);
+    for (int start = 0, end; start < order.length; start = end) {
+      end = getGroupEnd(componentBadWysiwygNamesSimpleDoc, order, start, 1);
+      nbComponentIds++;
+      report.append("\n").append(
+          componentDictionary.decode(componentBadWysiwygNamesSimpleDoc.get(order[start], 0)));
+      for (int basenameStart = start, basenameEnd; basenameStart < end;
+           basenameStart = basenameEnd) {
+        basenameEnd = getGroupEnd(componentBadWysiwygNamesSimpleDoc, order, basenameStart, 2);
         nbWysiwygBasenamePotentialLosses++;
-        IOUtils.write("\n\t" + potentialBadEntry.getKey(), fileOutputStream);
+        report.append("\n\t").append(wysiwygBasenameDictionary
+            .decode(componentBadWysiwygNamesSimpleDoc.get(order[basenameStart], 1)));
+        Set<String> simpleDocIds =
+            decodeSet(componentBadWysiwygNamesSimpleDoc, order, basenameStart, basenameEnd, 2,
+                simpleDocDictionary);
         Set<String> currentDeletedSimpledocs = new LinkedHashSet<String>();
         Set<String> currentSimpledocs = new LinkedHashSet<String>();
-        for (String simpleDoc : potentialBadEntry.getValue()) {
-          if (deletedSimpleDocs.contains(simpleDoc)) {
+        for (String simpleDoc : simpleDocIds) {
+          if (isMarked(deletedSimpleDocs, simpleDoc)) {
             currentDeletedSimpledocs.add(simpleDoc);
             currentSimpledocs.add(simpleDoc + "(d)");
           } else {
             currentSimpledocs.add(simpleDoc);
           }
         }
-        if (currentDeletedSimpledocs.size() == potentialBadEntry.getValue().size()) {
-          IOUtils.write("\n\t~d\t" + concatValues(currentSimpledocs), fileOutputStream);
+        if (currentDeletedSimpledocs.size() == simpleDocIds.size()) {
+          report.append("\n\t~d\t").appendValues(currentSimpledocs);
         } else {
-          IOUtils.write("\n\t\t" + concatValues(currentSimpledocs), fileOutputStream);
+          report.append("\n\t\t").appendValues(currentSimpledocs);
         }
       }
     }
-    IOUtils.write(
-        "\nNb component ids with potential losses: " + componentBadWysiwygNamesSimpleDoc.size(),
-        fileOutputStream);
-    IOUtils
-        .write("\nNb wysiwyg basenames with potential losses: " + nbWysiwygBasenamePotentialLosses,
-            fileOutputStream);
+    report.append("\nNb component ids with potential losses: ").append(nbComponentIds);
+    report.append("\nNb wysiwyg basenames with potential losses: ")
+        .append(nbWysiwygBasenamePotentialLosses);
 
-    IOUtils.write("\n-----------------------------------", fileOutputStream);
+    report.append("\n-----------------------------------");
 
-    writeStatisticsActions(fileOutputStream, componentMergedWysiwygSimpledocs, "merged");
+    writeStatisticsActions(report, componentMergedWysiwygSimpledocs, "merged");
 
-    IOUtils.write("\n-----------------------------------", fileOutputStream);
+    report.append("\n-----------------------------------");
 
-    writeStatisticsActions(fileOutputStream, componentCopiedWysiwygSimpledocs, "copied");
+    writeStatisticsActions(report, componentCopiedWysiwygSimpledocs, "copied");
 
-    IOUtils.write("\n-----------------------------------", fileOutputStream);
+    report.append("\n-----------------------------------");
 
-    writeStatisticsActions(fileOutputStream, componentTranslatedWysiwygSimpledocs, "translated");
+    writeStatisticsActions(report, componentTranslatedWysiwygSimpledocs, "translated");
 
-    IOUtils.write("\n-----------------------------------", fileOutputStream);
+    report.append("\n-----------------------------------");
 
-    writeStatisticsActions(fileOutputStream, componentRenamedWysiwygSimpledocs, "renamed");
+    writeStatisticsActions(report, componentRenamedWysiwygSimpledocs, "renamed");
 
-    IOUtils.write("\n###################################\n\n", fileOutputStream);
+    report.append("\n###################################\n\n");
   }
 
-  private void writeStatisticsActions(FileOutputStream fileOutputStream,
-      Map<String, Map<String, Set<String>>> componentWysiwygSimpledocs, String action)
+  private void writeStatisticsActions(ReportWriter report, IntTupleSet relations, String action)
       throws IOException {
+    int nbComponentIds = 0;
     int nbWysiwyg = 0;
-    for (Map.Entry<String, Map<String, Set<String>>> entry : componentWysiwygSimpledocs
-        .entrySet()) {
-      IOUtils.write("\n" + entry.getKey(), fileOutputStream);
-      nbWysiwyg += entry.getValue().size();
-      for (Map.Entry<String, Set<String>> wysiwygSimpleDocsEntry : entry.getValue().entrySet()) {
-        IOUtils.write("\n\t" + wysiwygSimpleDocsEntry.getKey(), fileOutputStream);
-        Set<String> currentSimpledocs = new LinkedHashSet<String>();
-        for (String simpleDocs : wysiwygSimpleDocsEntry.getValue()) {
-          Matcher simpleDocMatcher = REGEXP_SIMPLEDOC_ID.matcher(simpleDocs);
-          while (simpleDocMatcher.find()) {
-            String simpleDoc = simpleDocMatcher.group(1);
-            if (deletedSimpleDocs.contains(simpleDoc)) {
-              currentSimpledocs.add(simpleDoc + "(d)");
-            } else if (translatedSimpleDocs.contains(simpleDoc)) {
-              currentSimpledocs.add(simpleDoc + "(t)");
-            } else {
-              currentSimpledocs.add(simpleDoc);
-            }
+    Set<String> currentSimpledocs = new LinkedHashSet<String>();
+    int[] order = relations.groupedOrder(1, RELATION_PREFIX);
+    for (int start = 0, end; start < order.length; start = end) {
+      end = getGroupEnd(relations, order, start, 1);
+      nbComponentIds++;
+      report.append("\n").append(componentDictionary.decode(relations.get(order[start], 0)));
+      for (int relationStart = start, relationEnd; relationStart < end;
+           relationStart = relationEnd) {
+        relationEnd = getGroupEnd(relations, order, relationStart, RELATION_PREFIX);
+        nbWysiwyg++;
+        report.append("\n\t");
+        decodeWysiwygRelation(relations, order[relationStart]).writeTo(report);
+        currentSimpledocs.clear();
+        for (SimpleDocRelation simpleDocs : decodeSimpleDocRelations(relations, order,
+            relationStart, relationEnd)) {
+          currentSimpledocs.add(simpleDocs.getSource());
+          if (simpleDocs.getTarget() != null) {
+            currentSimpledocs.add(simpleDocs.getTarget());
+          }
+        }
+        report.append("\n\t\t");
+        String separator = "";
+        for (String simpleDoc : currentSimpledocs) {
+          report.append(separator).append(simpleDoc);
+          if (isMarked(deletedSimpleDocs, simpleDoc)) {
+            report.append("(d)");
+          } else if (isMarked(translatedSimpleDocs, simpleDoc)) {
+            report.append("(t)");
           }
+          separator = " -> ";
         }
-        IOUtils.write("\n\t\t" + concatValues(currentSimpledocs, " -> "), fileOutputStream);
       }
     }
-    IOUtils.write(
-        "\nNb component ids with " + action + " wysiwyg: " + componentWysiwygSimpledocs.size(),
-        fileOutputStream);
-    IOUtils.write("\nNb wysiwyg names " + action + ": " + nbWysiwyg, fileOutputStream);
+    report.append("\nNb component ids with ").append(action).append(" wysiwyg: ")
+        .append(nbComponentIds);
+    report.append("\nNb wysiwyg names ").append(action).append(": ").append(nbWysiwyg);
+  }
+
+  /**
+   * Exports the statistics as records, in the order of the report.
+   * @param exporter the exporter of the records.
+   */
+  void exportStatistics(StatisticsExporter exporter) throws IOException {
+    for (String componentId : components) {
+      exporter.start("component").field(Column.COMPONENT, componentId);
+      int componentHandle = componentDictionary.find(componentId);
+      IntTupleSet simpleDocHandles = getSet(componentSimpledocs, componentHandle);
+      if (simpleDocHandles != null) {
+        exporter.field(Column.NB_SIMPLEDOCS, simpleDocHandles.size());
+      }
+      IntTupleSet wysiwygBasenameHandles = getSet(componentWysiwygBasenames, componentHandle);
+      if (wysiwygBasenameHandles != null) {
+        exporter.field(Column.NB_WYSIWYG_BASENAMES, wysiwygBasenameHandles.size());
+      }
+      exporter.end();
+    }
+
+    int[] order = wysiwygBasenamesComponents.groupedOrder(1);
+    for (int start = 0, end; start < order.length; start = end) {
+      end = getGroupEnd(wysiwygBasenamesComponents, order, start, 1);
+      if (end - start > 1) {
+        exporter.start("sharedBasename").field(Column.WYSIWYG_BASENAME,
+            wysiwygBasenameDictionary.decode(wysiwygBasenamesComponents.get(order[start], 0)))
+            .field(Column.COMPONENTS,
+                decodeSet(wysiwygBasenamesComponents, order, start, end, 1, componentDictionary))
+            .end();
+      }
+    }
+
+    List<String> deletedSimpledocs = new ArrayList<String>();
+    order = componentBadWysiwygNamesSimpleDoc.groupedOrder(1, 2);
+    for (int start = 0, end; start < order.length; start = end) {
+      end = getGroupEnd(componentBadWysiwygNamesSimpleDoc, order, start, 2);
+      Set<String> simpleDocIds =
+          decodeSet(componentBadWysiwygNamesSimpleDoc, order, start, end, 2, simpleDocDictionary);
+      deletedSimpledocs.clear();
+      for (String simpleDoc : simpleDocIds) {
+        if (isMarked(deletedSimpleDocs, simpleDoc)) {
+          deletedSimpledocs.add(simpleDoc);
+        }
+      }
+      exporter.start("potentialLoss").field(Column.COMPONENT,
+          componentDictionary.decode(componentBadWysiwygNamesSimpleDoc.get(order[start], 0)))
+          .field(Column.WYSIWYG_BASENAME, wysiwygBasenameDictionary
+              .decode(componentBadWysiwygNamesSimpleDoc.get(order[start], 1)))
+          .field(Column.SIMPLEDOCS, simpleDocIds)
+          .field(Column.DELETED_SIMPLEDOCS, deletedSimpledocs).end();
+    }
+
+    exportRelations(exporter, componentMergedWysiwygSimpledocs, "merged");
+    exportRelations(exporter, componentCopiedWysiwygSimpledocs, "copied");
+    exportRelations(exporter, componentTranslatedWysiwygSimpledocs, "translated");
+    exportRelations(exporter, componentRenamedWysiwygSimpledocs, "renamed");
+
+    exporter.start("summary").field(Column.NB_COMPONENTS, components.size())
+        .field(Column.NB_DELETED_SIMPLEDOCS, deletedSimpleDocs.cardinality()).end();
+  }
+
+  private void exportRelations(StatisticsExporter exporter, IntTupleSet relations,
+      String action) throws IOException {
+    int[] order = relations.groupedOrder(1, RELATION_PREFIX);
+    for (int start = 0, end; start < order.length; start = end) {
+      end = getGroupEnd(relations, order, start, RELATION_PREFIX);
+      String componentId = componentDictionary.decode(relations.get(order[start], 0));
+      WysiwygRelation relation = decodeWysiwygRelation(relations, order[start]);
+      for (SimpleDocRelation simpleDocs : decodeSimpleDocRelations(relations, order, start,
+          end)) {
+        exporter.start("relation").field(Column.ACTION, action)
+            .field(Column.COMPONENT, componentId)
+            .field(Column.SOURCE_LANGUAGE, relation.getSourceLanguage())
+            .field(Column.SOURCE_WYSIWYG, relation.getSourceWysiwyg())
+            .field(Column.TARGET_LANGUAGE, relation.getTargetLanguage())
+            .field(Column.TARGET_WYSIWYG, relation.getTargetWysiwyg())
+            .field(Column.SOURCE_SIMPLEDOC, simpleDocs.getSource())
+            .field(Column.SOURCE_STATUS, getStatus(simpleDocs.getSource()))
+            .field(Column.TARGET_SIMPLEDOC, simpleDocs.getTarget())
+            .field(Column.TARGET_STATUS, getStatus(simpleDocs.getTarget())).end();
+      }
+    }
+  }
+
+  /**
+   * Gets the end (exclusive) of the group of tuples which starts at the given position of a
+   * {@link IntTupleSet#groupedOrder(int...)}, the tuples of a group having the same prefix.
+   */
+  private static int getGroupEnd(IntTupleSet tuples, int[] order, int start, int prefixLength) {
+    int end = start + 1;
+    while (end < order.length && hasSamePrefix(tuples, order[start], order[end], prefixLength)) {
+      end++;
+    }
+    return end;
+  }
+
+  private static boolean hasSamePrefix(IntTupleSet tuples, int index, int otherIndex,
+      int prefixLength) {
+    for (int field = 0; field < prefixLength; field++) {
+      if (tuples.get(index, field) != tuples.get(otherIndex, field)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Decodes the values at the given position of a group of tuples into a hash set, filled in the
+   * insertion order of the tuples, so that the identifiers are listed in the order of the hash set
+   * of the group.
+   */
+  private static Set<String> decodeSet(IntTupleSet tuples, int[] order, int start, int end,
+      int field, IdDictionary dictionary) {
+    Set<String> ids = new HashSet<String>();
+    for (int i = start; i < end; i++) {
+      ids.add(dictionary.decode(tuples.get(order[i], field)));
+    }
+    return ids;
+  }
+
+  private WysiwygRelation decodeWysiwygRelation(IntTupleSet relations, int index) {
+    String sourceLanguage = languageDictionary.decode(relations.get(index, 1));
+    String sourceWysiwyg = wysiwygNameDictionary.decode(relations.get(index, 2));
+    int targetLanguage = relations.get(index, 3);
+    String targetWysiwyg = wysiwygNameDictionary.decode(relations.get(index, 4));
+    return targetLanguage == NONE ?
+        WysiwygRelation.renaming(sourceLanguage, sourceWysiwyg, targetWysiwyg) :
+        WysiwygRelation.between(sourceLanguage, sourceWysiwyg,
+            languageDictionary.decode(targetLanguage), targetWysiwyg);
+  }
+
+  /**
+   * Decodes the simpledoc relations of a group of relation tuples into a hash set, filled in the
+   * insertion order of the tuples, so that the relations are listed in the order of the hash set
+   * of the group.
+   */
+  private Set<SimpleDocRelation> decodeSimpleDocRelations(IntTupleSet relations, int[] order,
+      int start, int end) {
+    Set<SimpleDocRelation> simpleDocRelations = new HashSet<SimpleDocRelation>();
+    for (int i = start; i < end; i++) {
+      int target = relations.get(order[i], TARGET_SIMPLEDOC);
+      simpleDocRelations.add(new SimpleDocRelation(
+          simpleDocDictionary.decode(relations.get(order[i], SOURCE_SIMPLEDOC)),
+          target == NONE ? null : simpleDocDictionary.decode(target)));
+    }
+    return simpleDocRelations;
+  }
+
+  /**
+   * Gets the status of a simpledoc as marked into the report: deleted, translated or none (null).
+   */
+  private String getStatus(String simpleDocId) {
+    if (simpleDocId == null) {
+      return null;
+    } else if (isMarked(deletedSimpleDocs, simpleDocId)) {
+      return "deleted";
+    } else if (isMarked(translatedSimpleDocs, simpleDocId)) {
+      return "translated";
+    }
+    return null;
   }
 
   /**
@@ -502,51 +953,144 @@ public class DataWiring {
    * @return
    */
   public String getComponentIdFromLine(String line) {
-    Matcher componentMatcher = REGEXP_COMPONENT_ID.matcher(line);
-    Matcher simpleDocIdMatcher = REGEXP_SIMPLEDOC_ID.matcher(line);
-    Matcher wysiwygBasenameMatcher = REGEXP_WYSIWYG_BASENAME.matcher(line);
-    for (String componentId : components) {
-      while (componentMatcher.find()) {
-        String extractedComponentId = componentMatcher.group(1);
-        if (extractedComponentId.equals(componentId)) {
-          return componentId;
-        }
+    return getComponentIdFromLine(ParsedLine.parse(line));
+  }
+
+  /**
+   * Retrieve from a parsed line the component id.
+   * Each token of the line is resolved by a hash lookup: the first component id of the line which
+   * is a wired component is returned, otherwise the first wired component of the first simpledoc
+   * id of the line wired to such a component.
+   * @param line
+   * @return
+   */
+  String getComponentIdFromLine(ParsedLine line) {
+    for (String componentId : line.getComponentIds()) {
+      if (isRetrievable(componentId)) {
+        return componentId;
       }
+    }
 
-      Set<String> simpleDocIds = componentSimpledocs.get(componentId);
-      if (simpleDocIds != null) {
-        while (simpleDocIdMatcher.find()) {
-          String extractedSimpleDocId = simpleDocIdMatcher.group(1);
-          for (String simpleDocId : simpleDocIds) {
-            if (extractedSimpleDocId.equals(simpleDocId)) {
-              return componentId;
-            }
+    for (String simpleDocId : line.getSimpleDocIds()) {
+      int[] componentHandles = getSimpleDocComponents(simpleDocId);
+      if (componentHandles != null) {
+        for (int componentHandle : componentHandles) {
+          String componentId = componentDictionary.decode(componentHandle);
+          if (isRetrievable(componentId)) {
+            return componentId;
           }
         }
       }
-
-//      Set<String> wysiwygBasenames = componentWysiwygBasenames.get(componentId);
-//      if (wysiwygBasenames != null) {
-//        while (wysiwygBasenameMatcher.find()) {
-//          String extractedWysiwygBasename = wysiwygBasenameMatcher.group(1);
-//          for (String wysiwygBasename : wysiwygBasenames) {
-//            if (extractedWysiwygBasename.equals(wysiwygBasename)) {
-//              return componentId;
-//            }
-//          }
-//        }
-//      }
-
-      componentMatcher.reset();
-      simpleDocIdMatcher.reset();
-      wysiwygBasenameMatcher.reset();
     }
     return null;
   }
 
+  /**
+   * Indicates if a simpledoc is wired to a component, even a closed one.
+   * @param simpleDocId the identifier of a simpledoc.
+   * @return true if the simpledoc is wired, false otherwise.
+   */
+  boolean isSimpleDocWired(String simpleDocId) {
+    return getSimpleDocComponents(simpleDocId) != null;
+  }
+
+  /**
+   * Gets the handles of the components of a simpledoc, in their wiring order.
+   * @return the handles, null if the simpledoc is not wired to any component.
+   */
+  private int[] getSimpleDocComponents(String simpleDocId) {
+    int handle = simpleDocDictionary.find(simpleDocId);
+    return handle != NONE && handle < simpleDocComponents.length ? simpleDocComponents[handle] :
+        null;
+  }
+
+  private boolean isRetrievable(String componentId) {
+    return components.contains(componentId) &&
+        !closedComponents.get(componentDictionary.find(componentId));
+  }
+
+  /**
+   * Indicates if a simpledoc is marked into the given set of simpledoc handles.
+   */
+  private boolean isMarked(BitSet simpleDocs, String simpleDocId) {
+    int handle = simpleDocDictionary.find(simpleDocId);
+    return handle != NONE && simpleDocs.get(handle);
+  }
+
+  /**
+   * Centralizes the wiring of a simpledoc to a component. A simpledoc wired to several
+   * components is retrieved from the lines as belonging to the first one which is neither closed
+   * nor cleared.
+   */
+  private void putComponentSimpledoc(int componentHandle, int simpleDocHandle) {
+    componentSimpledocs = putAddSet(componentSimpledocs, componentHandle, simpleDocHandle);
+    putSimpleDocComponent(componentHandle, simpleDocHandle);
+  }
+
+  private void putSimpleDocComponent(int componentHandle, int handle) {
+    if (handle >= simpleDocComponents.length) {
+      simpleDocComponents = Arrays.copyOf(simpleDocComponents, Math.max(1024, handle * 2));
+    }
+    int[] componentHandles = simpleDocComponents[handle];
+    if (componentHandles == null) {
+      simpleDocComponents[handle] = getSingleton(componentHandle);
+    } else if (!ArrayUtils.contains(componentHandles, componentHandle)) {
+      simpleDocComponents[handle] = ArrayUtils.add(componentHandles, componentHandle);
+    }
+  }
+
+  /**
+   * Gets the array holding only the handle of the given component, which is shared by all the
+   * simpledocs wired to this component only: the arrays of handles are replaced, never modified.
+   */
+  private int[] getSingleton(int componentHandle) {
+    if (componentHandle >= componentSingletons.length) {
+      componentSingletons =
+          Arrays.copyOf(componentSingletons, Math.max(1024, componentHandle * 2));
+    }
+    int[] singleton = componentSingletons[componentHandle];
+    if (singleton == null) {
+      singleton = new int[]{componentHandle};
+      componentSingletons[componentHandle] = singleton;
+    }
+    return singleton;
+  }
+
+  /**
+   * Unwires the simpledocs of a cleared component from it, the simpledocs staying wired to their
+   * other components.
+   */
+  private void clearSimpleDocComponents(int componentHandle) {
+    IntTupleSet simpleDocHandles = getSet(componentSimpledocs, componentHandle);
+    if (simpleDocHandles != null) {
+      for (int i = 0; i < simpleDocHandles.size(); i++) {
+        int handle = simpleDocHandles.get(i, 0);
+        int[] componentHandles =
+            ArrayUtils.removeElement(simpleDocComponents[handle], componentHandle);
+        simpleDocComponents[handle] =
+            ArrayUtils.isEmpty(componentHandles) ? null : componentHandles;
+      }
+    }
+  }
+
   public void clearComponentId(String componentId) {
+    int componentHandle = componentDictionary.find(componentId);
+    clearSimpleDocComponents(componentHandle);
     components.remove(componentId);
-    componentSimpledocs.remove(componentId);
-    componentWysiwygBasenames.remove(componentId);
+    if (getSet(componentSimpledocs, componentHandle) != null) {
+      componentSimpledocs[componentHandle] = null;
+    }
+    if (getSet(componentWysiwygBasenames, componentHandle) != null) {
+      componentWysiwygBasenames[componentHandle] = null;
+    }
+  }
+
+  /**
+   * Excludes a component from the ones retrieved from the lines, without clearing its data which
+   * are still needed by the statistics.
+   * @param componentId the identifier of the ended component.
+   */
+  public void closeComponentId(String componentId) {
+    closedComponents.set(componentDictionary.encode(componentId));
   }
 }
@@ -26,15 +26,18 @@ package org.silverpeas.tools.dbBuilder.wysiwyg.adjustment;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.silverpeas.tools.util.Compression;
 import org.silverpeas.tools.util.Config;
+import org.silverpeas.tools.util.ReportWriter;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
 
 /**
  * User: Yohann Chastagnier
@@ -42,11 +45,19 @@ import java.util.regex.Matcher;
  */
 public class LogRewriter {
 
+  /**
+   * The rewritten lines are encoded with the charset with which dbBuilder.log is read.
+   */
+  private static final Charset CHARSET = Charset.defaultCharset();
+
   private final File dbBuilderLogs;
+  private final Compression outputCompression;
+  private final StatisticsExporter.Format statsExportFormat;
   private File rewrittenDbBuilderLogs;
   private DataWiring dataWiring;
 
   private Map<String, ComponentLogs> currents = new LinkedHashMap<String, ComponentLogs>();
+  private List<List<String>> unresolvedSimpleDocIds = null;
 
   /**
    * @param dbBuilderLogs the path (with filename) of dbBuilder.log
@@ -65,96 +76,246 @@ public class LogRewriter {
       throw new IllegalArgumentException("given dbBuilder log file is not a physical file ...");
     }
     this.dbBuilderLogs = dbBuilderLogs;
+    this.outputCompression = Compression.fromProperty("compressOutput");
+    this.statsExportFormat = StatisticsExporter.getRequestedFormat();
     String parentPath = dbBuilderLogs.getParentFile().getAbsolutePath();
-    String fileBasename = FilenameUtils.getBaseName(dbBuilderLogs.getName());
-    String fileExtension = FilenameUtils.getExtension(dbBuilderLogs.getName());
+    String fileName = Compression.removeExtension(dbBuilderLogs.getName());
+    String fileBasename = FilenameUtils.getBaseName(fileName);
+    String fileExtension = FilenameUtils.getExtension(fileName);
     this.rewrittenDbBuilderLogs = FileUtils.getFile(parentPath,
-        fileBasename + "_" + Config.getFormattedExecutionStart() + "." + fileExtension);
+        fileBasename + "_" + Config.getFormattedExecutionStart() + "." + fileExtension +
+            outputCompression.getFileSuffix());
   }
 
   /**
    * Executing treatments
    */
   private LogRewriter execute() throws Exception {
+    if (Boolean.valueOf(System.getProperty("singlePass"))) {
+      return executeInSinglePass();
+    }
     dataWiring = DataWiring.execute(dbBuilderLogs);
 
-    BufferedReader dbBuilderLogsReader = IOUtils.toBufferedReader(new FileReader(dbBuilderLogs));
+    BufferedReader dbBuilderLogsReader = Compression.openReader(dbBuilderLogs);
     try {
-      FileOutputStream dbBuilderLogsOS = FileUtils.openOutputStream(rewrittenDbBuilderLogs);
+      ReportWriter dbBuilderLogsWriter = openWriter(rewrittenDbBuilderLogs, outputCompression);
       try {
 
-        dataWiring.writeStatistics(dbBuilderLogsOS);
+        dataWiring.writeStatistics(dbBuilderLogsWriter);
+        exportStatistics();
 
-        if (Boolean.valueOf(System.getProperty("statsOnly"))) {
-          return this;
-        }
+        if (!Boolean.valueOf(System.getProperty("statsOnly"))) {
+          String line;
+          do {
 
-        String line;
-        do {
+            // A line
+            line = dbBuilderLogsReader.readLine();
 
-          // A line
-          line = dbBuilderLogsReader.readLine();
+            if (line == null) {
+              break;
+            }
 
-          if (line == null) {
-            break;
-          }
+            rewriteLine(ParsedLine.parse(line), dbBuilderLogsWriter, false);
 
-          String componentIdEnding = null;
+          } while (true);
+        }
+        dbBuilderLogsWriter.flush();
+      } finally {
+        discardCurrents();
+        IOUtils.closeQuietly(dbBuilderLogsWriter);
+      }
+    } finally {
+      IOUtils.closeQuietly(dbBuilderLogsReader);
+    }
+    return this;
+  }
 
-          // New component ?
-          Matcher matcher = DataWiring.REGEXP_NEW_COMPONENT_DETECTOR.matcher(line);
-          if (matcher.find()) {
-            String componentId = matcher.group(1);
-            if (currents.containsKey(componentId)) {
-              throw new IllegalStateException(
-                  "The componentId " + componentId + " has already been started !!!");
+  /**
+   * Executing treatments by reading dbBuilder.log only once: each line is wired and then
+   * regrouped with the lines of its component, the regrouped components being spooled into a
+   * temporary file in their ending order. As the statistics must be written first, the spooled
+   * lines are appended to the rewritten file once the statistics are written.
+   * <p>
+   * A line is regrouped with the data wired from the lines read before it: a line which can only
+   * be attributed to a component through a simpledoc wired later in the log is lost, whereas the
+   * two passes execution keeps it. Such lines are counted and reported at the end of the
+   * execution, which must then be done again without the singlePass option.
+   */
+  private LogRewriter executeInSinglePass() throws Exception {
+    boolean statsOnly = Boolean.valueOf(System.getProperty("statsOnly"));
+    dataWiring = DataWiring.init(dbBuilderLogs);
+    unresolvedSimpleDocIds = new ArrayList<List<String>>();
+    File spool = File.createTempFile(
+        "spool-" + FilenameUtils.getBaseName(dbBuilderLogs.getName()), ".tmp",
+        rewrittenDbBuilderLogs.getParentFile());
+    try {
+      BufferedReader dbBuilderLogsReader = Compression.openReader(dbBuilderLogs);
+      try {
+        ReportWriter spoolWriter = openWriter(spool, Compression.NONE);
+        try {
+          String line;
+          while ((line = dbBuilderLogsReader.readLine()) != null) {
+            ParsedLine parsedLine = dataWiring.wire(line);
+            if (!statsOnly) {
+              rewriteLine(parsedLine, spoolWriter, true);
             }
-            currents.put(componentId, new ComponentLogs(componentId));
           }
+          spoolWriter.flush();
+        } finally {
+          discardCurrents();
+          IOUtils.closeQuietly(spoolWriter);
+        }
+      } finally {
+        IOUtils.closeQuietly(dbBuilderLogsReader);
+      }
 
-          // End component ?
-          matcher = DataWiring.REGEXP_END_COMPONENT_DETECTOR.matcher(line);
-          if (matcher.find()) {
-            String componentId = matcher.group(1);
-            if (!currents.containsKey(componentId)) {
-              throw new IllegalStateException(
-                  "The componentId " + componentId + " has already been ending !!!");
-            }
+      ReportWriter dbBuilderLogsWriter = openWriter(rewrittenDbBuilderLogs, outputCompression);
+      try {
+        dataWiring.writeStatistics(dbBuilderLogsWriter);
+        exportStatistics();
+        dbBuilderLogsWriter.appendFile(spool);
+      } finally {
+        IOUtils.closeQuietly(dbBuilderLogsWriter);
+      }
+    } finally {
+      FileUtils.deleteQuietly(spool);
+    }
+    reportLinesWiredLater();
+    return this;
+  }
 
-            componentIdEnding = componentId;
-          }
+  /**
+   * Keeps the simpledocs of a line which is not regrouped, if none of them is wired yet.
+   */
+  private void keepUnwiredSimpleDocIds(ParsedLine line) {
+    for (String simpleDocId : line.getSimpleDocIds()) {
+      if (dataWiring.isSimpleDocWired(simpleDocId)) {
+        return;
+      }
+    }
+    if (!line.getSimpleDocIds().isEmpty()) {
+      unresolvedSimpleDocIds.add(line.getSimpleDocIds());
+    }
+  }
 
-          if (!currents.isEmpty()) {
+  /**
+   * Reports the lines lost by the single pass execution because their simpledocs have been wired
+   * to a component after them.
+   */
+  private void reportLinesWiredLater() {
+    int nbLines = 0;
+    for (List<String> simpleDocIds : unresolvedSimpleDocIds) {
+      for (String simpleDocId : simpleDocIds) {
+        if (dataWiring.isSimpleDocWired(simpleDocId)) {
+          nbLines++;
+          break;
+        }
+      }
+    }
+    if (nbLines > 0) {
+      System.out.println("WARNING: " + nbLines +
+          " line(s) not regrouped because their simpledocs are wired later in the log, " +
+          "execute again without -DsinglePass to regroup them");
+    }
+  }
 
-            String componentId = dataWiring.getComponentIdFromLine(line);
-            if (componentId == null) {
-              //  System.out.println("No component found in the line : " + line);
-              continue;
-            }
+  /**
+   * Regroups a line with the ones of its component, the lines of a component being written when
+   * the component ends.
+   * @param line a parsed line of dbBuilder.log
+   * @param dbBuilderLogsWriter the output of the regrouped lines
+   * @param keepingWiredData true if the data of the ended components must be kept into the
+   * wiring (the statistics are not written yet)
+   */
+  private void rewriteLine(ParsedLine line, ReportWriter dbBuilderLogsWriter,
+      boolean keepingWiredData) throws IOException {
+    String componentIdEnding = null;
 
-            ComponentLogs componentLogs = currents.get(componentId);
-            if (componentLogs == null) {
-              System.out.println("No component logs found the line : " + line);
-              continue;
-            }
+    // New component ?
+    if (!line.getStartedComponentIds().isEmpty()) {
+      String componentId = line.getStartedComponentIds().get(0);
+      if (currents.containsKey(componentId)) {
+        throw new IllegalStateException(
+            "The componentId " + componentId + " has already been started !!!");
+      }
+      currents.put(componentId,
+          new ComponentLogs(componentId, rewrittenDbBuilderLogs.getParentFile(), CHARSET));
+    }
 
-            componentLogs.addLine(line);
-          }
+    // End component ?
+    if (!line.getEndedComponentIds().isEmpty()) {
+      String componentId = line.getEndedComponentIds().get(0);
+      if (!currents.containsKey(componentId)) {
+        throw new IllegalStateException(
+            "The componentId " + componentId + " has already been ending !!!");
+      }
 
-          if (componentIdEnding != null) {
-            ComponentLogs componentLogs = currents.remove(componentIdEnding);
-            dataWiring.clearComponentId(componentIdEnding);
+      componentIdEnding = componentId;
+    }
 
-            IOUtils.writeLines(componentLogs.getLines(), "\n", dbBuilderLogsOS);
-          }
+    if (!currents.isEmpty()) {
+
+      String componentId = dataWiring.getComponentIdFromLine(line);
+      if (componentId == null && unresolvedSimpleDocIds != null) {
+        keepUnwiredSimpleDocIds(line);
+      }
+      if (componentId == null) {
+        //  System.out.println("No component found in the line : " + line);
+        return;
+      }
+
+      ComponentLogs componentLogs = currents.get(componentId);
+      if (componentLogs == null) {
+        System.out.println("No component logs found the line : " + line.getLine());
+        return;
+      }
+
+      componentLogs.addLine(line.getLine());
+    }
 
-        } while (true);
+    if (componentIdEnding != null) {
+      ComponentLogs componentLogs = currents.remove(componentIdEnding);
+      if (keepingWiredData) {
+        dataWiring.closeComponentId(componentIdEnding);
+      } else {
+        dataWiring.clearComponentId(componentIdEnding);
+      }
+
+      componentLogs.writeTo(dbBuilderLogsWriter);
+    }
+  }
+
+  /**
+   * Exports the statistics of the data wiring if an export has been requested
+   * (-DstatsExport=jsonl|csv), the requested format being verified at the construction.
+   */
+  private void exportStatistics() throws IOException {
+    StatisticsExporter exporter = StatisticsExporter.open(rewrittenDbBuilderLogs, statsExportFormat);
+    if (exporter != null) {
+      try {
+        dataWiring.exportStatistics(exporter);
+        exporter.close();
       } finally {
-        IOUtils.closeQuietly(dbBuilderLogsOS);
+        IOUtils.closeQuietly(exporter);
       }
-    } finally {
-      IOUtils.closeQuietly(dbBuilderLogsReader);
     }
-    return this;
+  }
+
+  /**
+   * Opens a writer of the rewritten lines.
+   */
+  private static ReportWriter openWriter(File file, Compression compression) throws IOException {
+    return new ReportWriter(compression.openOutputStream(file), CHARSET);
+  }
+
+  /**
+   * Releases the lines of the components which have not been ended, their temporary file
+   * segments included.
+   */
+  private void discardCurrents() {
+    for (ComponentLogs componentLogs : currents.values()) {
+      componentLogs.discard();
+    }
+    currents.clear();
   }
 }
@@ -0,0 +1,600 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.dbBuilder.wysiwyg.adjustment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The data of a dbBuilder.log line needed by the wiring and by the rewriting of the logs.
+ * <p>
+ * The line is tokenized by a single left-to-right scan: at each position, each kind of token is
+ * tried as the corresponding regular expression would be by successive finds (same leftmost,
+ * greedy and case insensitive ASCII semantics), so a line which contains nothing interesting
+ * costs only one pass over its characters. The former regular expressions are kept: with the
+ * verifyTokenizer system property set to true, each line is also parsed with them and the
+ * execution stops at the first difference.
+ */
+class ParsedLine {
+
+  private static final boolean VERIFYING = Boolean.valueOf(System.getProperty("verifyTokenizer"));
+
+  private final static Pattern REGEXP_COMPONENT_ID = Pattern.compile("(?i)([a-z]+[0-9]+)");
+  private final static Pattern REGEXP_SIMPLEDOC_ID = Pattern.compile("(?i)(simpledoc_[0-9]+)");
+  private final static Pattern REGEXP_WYSIWYG_NAME =
+      Pattern.compile("(?i)([a-z_]*[0-9]+wysiwyg[^ \\\\/]+)");
+  private final static Pattern REGEXP_PATH_LANGUAGE =
+      Pattern.compile("(?i)[\\\\/]([a-z]{2})[\\\\/]");
+  private final static Pattern REGEXP_WYSIWYG_LANGUAGE =
+      Pattern.compile("(?i)wysiwyg_([a-z]{2}|)\\.txt");
+  private final static Pattern REGEXP_OPERATION = Pattern
+      .compile("(?i)([a-z]+[0-9]+)[\\\\/](simpledoc_[0-9]+)[^ ]+[\\\\/]([a-z_]*[0-9]+wysiwyg)");
+  private final static Pattern REGEXP_OPERATION_WYSIWYG_ALL =
+      Pattern.compile("(?i)[\\\\/]([a-z_]*[0-9]+wysiwyg[^ ]+)");
+  private final static Pattern REGEXP_BACKUP =
+      Pattern.compile("(?i)([a-z]+[0-9]+)[\\\\/](simpledoc_[0-9]+)");
+
+  private static final String NEW_COMPONENT_PREFIX =
+      "starting wysiwyg adjustment for component instance id ";
+  private static final String END_COMPONENT_PREFIX =
+      "finishing wysiwyg adjustment for component instance id ";
+  private static final String SIMPLEDOC_PREFIX = "simpledoc_";
+  private static final String WYSIWYG = "wysiwyg";
+  private static final String WYSIWYG_LANGUAGE_PREFIX = "wysiwyg_";
+  private static final String TXT_EXTENSION = ".txt";
+
+  /**
+   * The case sensitive texts searched into the lines.
+   */
+  enum Marker {
+    DELETED("has been deleted"),
+    RIGHT_LANGUAGE_SUFFIX("with the right language suffix"),
+    BACKUP("Physical backup has been performed for directory"),
+    MERGED("has been merged into"),
+    NOT_MERGED("has not been merged into the target"),
+    COPIED("has been copied into"),
+    TRANSLATED("into right location language"),
+    JCR_DELETION("will be deleted from the JCR"),
+    RENAMING("will be renamed with right language suffix");
+
+    private final String text;
+
+    Marker(final String text) {
+      this.text = text;
+    }
+
+    public String getText() {
+      return text;
+    }
+  }
+
+  /**
+   * A component, a simpledoc and a wysiwyg basename referenced together by a path of the line.
+   */
+  static class Location {
+    final String componentId;
+    final String simpleDocId;
+    final String wysiwygBasename;
+
+    private Location(final String componentId, final String simpleDocId,
+        final String wysiwygBasename) {
+      this.componentId = componentId;
+      this.simpleDocId = simpleDocId;
+      this.wysiwygBasename = wysiwygBasename;
+    }
+
+    @Override
+    public String toString() {
+      return componentId + "/" + simpleDocId + "/" + wysiwygBasename;
+    }
+  }
+
+  private final String line;
+  private final Set<Marker> markers = EnumSet.noneOf(Marker.class);
+  private List<String> componentIds = Collections.emptyList();
+  private List<String> simpleDocIds = Collections.emptyList();
+  private List<String> wysiwygNames = Collections.emptyList();
+  private List<String> operationWysiwygNames = Collections.emptyList();
+  private List<String> pathLanguages = Collections.emptyList();
+  private List<String> wysiwygLanguages = Collections.emptyList();
+  private List<Location> operations = Collections.emptyList();
+  private List<Location> backups = Collections.emptyList();
+  private List<String> startedComponentIds = Collections.emptyList();
+  private List<String> endedComponentIds = Collections.emptyList();
+
+  /**
+   * Parses the given line.
+   * @param line a line of dbBuilder.log
+   * @return the parsed line
+   */
+  static ParsedLine parse(String line) {
+    ParsedLine parsedLine = new ParsedLine(line).tokenize();
+    if (VERIFYING) {
+      ParsedLine matchedLine = parseWithRegularExpressions(line);
+      if (!parsedLine.toString().equals(matchedLine.toString())) {
+        throw new IllegalStateException(
+            "The tokenizer and the regular expressions differ on the line : " + line +
+                "\n\ttokenizer          -> " + parsedLine + "\n\tregular expressions -> " +
+                matchedLine);
+      }
+    }
+    return parsedLine;
+  }
+
+  /**
+   * Parses the given line with the former regular expressions.
+   * @param line a line of dbBuilder.log
+   * @return the parsed line
+   */
+  static ParsedLine parseWithRegularExpressions(String line) {
+    return new ParsedLine(line).match();
+  }
+
+  private ParsedLine(final String line) {
+    this.line = line;
+  }
+
+  public String getLine() {
+    return line;
+  }
+
+  public boolean contains(Marker marker) {
+    return markers.contains(marker);
+  }
+
+  public List<String> getComponentIds() {
+    return componentIds;
+  }
+
+  public List<String> getSimpleDocIds() {
+    return simpleDocIds;
+  }
+
+  public List<String> getWysiwygNames() {
+    return wysiwygNames;
+  }
+
+  public List<String> getOperationWysiwygNames() {
+    return operationWysiwygNames;
+  }
+
+  public List<String> getPathLanguages() {
+    return pathLanguages;
+  }
+
+  public List<String> getWysiwygLanguages() {
+    return wysiwygLanguages;
+  }
+
+  public List<Location> getOperations() {
+    return operations;
+  }
+
+  public List<Location> getBackups() {
+    return backups;
+  }
+
+  public List<String> getStartedComponentIds() {
+    return startedComponentIds;
+  }
+
+  public List<String> getEndedComponentIds() {
+    return endedComponentIds;
+  }
+
+  /**
+   * The single scan of the line. For each kind of token, the position from which the next token
+   * can be found is kept, as a matcher does between two finds.
+   */
+  private ParsedLine tokenize() {
+    int length = line.length();
+    int nextComponent = 0;
+    int nextSimpleDoc = 0;
+    int nextWysiwygName = 0;
+    int nextOperationWysiwygName = 0;
+    int nextPathLanguage = 0;
+    int nextWysiwygLanguage = 0;
+    int nextOperation = 0;
+    int nextBackup = 0;
+    int nextStarted = 0;
+    int nextEnded = 0;
+    for (int i = 0; i < length; i++) {
+      char c = line.charAt(i);
+      char previous = i > 0 ? line.charAt(i - 1) : ' ';
+
+      // Only the first letter of a run of letters can start a component id: from the next ones,
+      // the same digits would follow the same letters
+      if (isLetter(c) && !isLetter(previous)) {
+        if (i >= nextComponent) {
+          int end = matchComponentId(i);
+          if (end > 0) {
+            componentIds = add(componentIds, line.substring(i, end));
+            nextComponent = end;
+          }
+        }
+        if (i >= nextOperation) {
+          nextOperation = matchOperation(i, nextOperation);
+        }
+        if (i >= nextBackup) {
+          nextBackup = matchBackup(i, nextBackup);
+        }
+      } else if (i == nextComponent || i == nextOperation || i == nextBackup) {
+        // A search restarting inside a run of letters
+        if (isLetter(c)) {
+          if (i == nextComponent) {
+            int end = matchComponentId(i);
+            if (end > 0) {
+              componentIds = add(componentIds, line.substring(i, end));
+              nextComponent = end;
+            }
+          }
+          if (i == nextOperation) {
+            nextOperation = matchOperation(i, nextOperation);
+          }
+          if (i == nextBackup) {
+            nextBackup = matchBackup(i, nextBackup);
+          }
+        }
+      }
+
+      // Only the first character of a run of [a-z_] or of a run of digits which does not follow
+      // such a run can start a wysiwyg name: from the next ones, the same continuation is tried
+      if (i >= nextWysiwygName && !isLetterOrUnderscore(previous) &&
+          (isLetterOrUnderscore(c) || isDigit(c) && !isDigit(previous))) {
+        int end = matchWysiwygName(i, false);
+        if (end > 0) {
+          wysiwygNames = add(wysiwygNames, line.substring(i, end));
+          nextWysiwygName = end;
+        }
+      }
+
+      if (isSlash(c)) {
+        if (i >= nextOperationWysiwygName) {
+          int end = matchWysiwygName(i + 1, true);
+          if (end > 0) {
+            operationWysiwygNames = add(operationWysiwygNames, line.substring(i + 1, end));
+            nextOperationWysiwygName = end;
+          }
+        }
+        if (i >= nextPathLanguage && i + 3 < length && isLetter(line.charAt(i + 1)) &&
+            isLetter(line.charAt(i + 2)) && isSlash(line.charAt(i + 3))) {
+          pathLanguages = add(pathLanguages, line.substring(i + 1, i + 3));
+          nextPathLanguage = i + 4;
+        }
+      }
+
+      switch (c) {
+        case 's':
+        case 'S':
+          if (i >= nextSimpleDoc && regionMatches(i, SIMPLEDOC_PREFIX)) {
+            int end = endOfDigits(i + SIMPLEDOC_PREFIX.length());
+            if (end > i + SIMPLEDOC_PREFIX.length()) {
+              simpleDocIds = add(simpleDocIds, line.substring(i, end));
+              nextSimpleDoc = end;
+            }
+          }
+          if (i >= nextStarted && regionMatches(i, NEW_COMPONENT_PREFIX)) {
+            int start = i + NEW_COMPONENT_PREFIX.length();
+            int end = matchComponentId(start);
+            if (end > 0) {
+              startedComponentIds = add(startedComponentIds, line.substring(start, end));
+              nextStarted = end;
+            }
+          }
+          break;
+        case 'f':
+        case 'F':
+          if (i >= nextEnded && regionMatches(i, END_COMPONENT_PREFIX)) {
+            int start = i + END_COMPONENT_PREFIX.length();
+            int end = matchComponentId(start);
+            if (end > 0) {
+              endedComponentIds = add(endedComponentIds, line.substring(start, end));
+              nextEnded = end;
+            }
+          }
+          break;
+        case 'w':
+        case 'W':
+          if (i >= nextWysiwygLanguage && regionMatches(i, WYSIWYG_LANGUAGE_PREFIX)) {
+            int start = i + WYSIWYG_LANGUAGE_PREFIX.length();
+            if (start + 1 < length && isLetter(line.charAt(start)) &&
+                isLetter(line.charAt(start + 1)) && regionMatches(start + 2, TXT_EXTENSION)) {
+              wysiwygLanguages = add(wysiwygLanguages, line.substring(start, start + 2));
+              nextWysiwygLanguage = start + 2 + TXT_EXTENSION.length();
+            } else if (regionMatches(start, TXT_EXTENSION)) {
+              wysiwygLanguages = add(wysiwygLanguages, "");
+              nextWysiwygLanguage = start + TXT_EXTENSION.length();
+            }
+          }
+          break;
+        default:
+          break;
+      }
+
+      matchMarkers(c, i);
+    }
+    return this;
+  }
+
+  private void matchMarkers(char c, int offset) {
+    switch (c) {
+      case 'h':
+        matchMarker(Marker.DELETED, offset);
+        matchMarker(Marker.MERGED, offset);
+        matchMarker(Marker.NOT_MERGED, offset);
+        matchMarker(Marker.COPIED, offset);
+        break;
+      case 'w':
+        matchMarker(Marker.RIGHT_LANGUAGE_SUFFIX, offset);
+        matchMarker(Marker.JCR_DELETION, offset);
+        matchMarker(Marker.RENAMING, offset);
+        break;
+      case 'P':
+        matchMarker(Marker.BACKUP, offset);
+        break;
+      case 'i':
+        matchMarker(Marker.TRANSLATED, offset);
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void matchMarker(Marker marker, int offset) {
+    if (line.startsWith(marker.getText(), offset)) {
+      markers.add(marker);
+    }
+  }
+
+  /**
+   * Matches [a-z]+[0-9]+ at the given offset.
+   * @return the end of the match, -1 if none.
+   */
+  private int matchComponentId(int offset) {
+    int endOfLetters = endOfLetters(offset);
+    if (endOfLetters == offset) {
+      return -1;
+    }
+    int endOfDigits = endOfDigits(endOfLetters);
+    return endOfDigits > endOfLetters ? endOfDigits : -1;
+  }
+
+  /**
+   * Matches [a-z_]*[0-9]+wysiwyg at the given offset.
+   * @return the end of the match, -1 if none.
+   */
+  private int matchWysiwygBasename(int offset) {
+    int endOfLetters = offset;
+    while (endOfLetters < line.length() && isLetterOrUnderscore(line.charAt(endOfLetters))) {
+      endOfLetters++;
+    }
+    int endOfDigits = endOfDigits(endOfLetters);
+    if (endOfDigits == endOfLetters || !regionMatches(endOfDigits, WYSIWYG)) {
+      return -1;
+    }
+    return endOfDigits + WYSIWYG.length();
+  }
+
+  /**
+   * Matches [a-z_]*[0-9]+wysiwyg[^ \\/]+ at the given offset, or [a-z_]*[0-9]+wysiwyg[^ ]+ if
+   * the slashes are allowed after the basename.
+   * @return the end of the match, -1 if none.
+   */
+  private int matchWysiwygName(int offset, boolean slashesAllowed) {
+    int end = matchWysiwygBasename(offset);
+    if (end < 0) {
+      return -1;
+    }
+    int start = end;
+    while (end < line.length() && line.charAt(end) != ' ' &&
+        (slashesAllowed || !isSlash(line.charAt(end)))) {
+      end++;
+    }
+    return end > start ? end : -1;
+  }
+
+  /**
+   * Matches ([a-z]+[0-9]+)[\\/](simpledoc_[0-9]+)[^ ]+[\\/]([a-z_]*[0-9]+wysiwyg) at the given
+   * offset: the greedy [^ ]+ leads to the last slash of the word followed by a wysiwyg basename.
+   * @return the position from which the next operation can be found.
+   */
+  private int matchOperation(int offset, int next) {
+    int endOfComponentId = matchComponentId(offset);
+    if (endOfComponentId < 0 || endOfComponentId >= line.length() ||
+        !isSlash(line.charAt(endOfComponentId))) {
+      return next;
+    }
+    int simpleDocStart = endOfComponentId + 1;
+    if (!regionMatches(simpleDocStart, SIMPLEDOC_PREFIX)) {
+      return next;
+    }
+    int digitsStart = simpleDocStart + SIMPLEDOC_PREFIX.length();
+    int endOfSimpleDocId = endOfDigits(digitsStart);
+    if (endOfSimpleDocId == digitsStart) {
+      return next;
+    }
+    int endOfWord = line.indexOf(' ', endOfSimpleDocId);
+    if (endOfWord < 0) {
+      endOfWord = line.length();
+    }
+    for (int slash = endOfWord - 1; slash > endOfSimpleDocId; slash--) {
+      if (isSlash(line.charAt(slash))) {
+        int end = matchWysiwygBasename(slash + 1);
+        if (end > 0) {
+          addOperation(offset, endOfComponentId, simpleDocStart, endOfSimpleDocId, slash, end);
+          return end;
+        }
+      }
+    }
+    // The digits of the simpledoc id give back their last one to [^ ]+
+    if (endOfSimpleDocId - digitsStart >= 2 && endOfSimpleDocId < line.length() &&
+        isSlash(line.charAt(endOfSimpleDocId))) {
+      int end = matchWysiwygBasename(endOfSimpleDocId + 1);
+      if (end > 0) {
+        addOperation(offset, endOfComponentId, simpleDocStart, endOfSimpleDocId - 1,
+            endOfSimpleDocId, end);
+        return end;
+      }
+    }
+    return next;
+  }
+
+  private void addOperation(int componentStart, int componentEnd, int simpleDocStart,
+      int simpleDocEnd, int slash, int basenameEnd) {
+    operations = add(operations, new Location(line.substring(componentStart, componentEnd),
+        line.substring(simpleDocStart, simpleDocEnd), line.substring(slash + 1, basenameEnd)));
+  }
+
+  /**
+   * Matches ([a-z]+[0-9]+)[\\/](simpledoc_[0-9]+) at the given offset.
+   * @return the position from which the next backup can be found.
+   */
+  private int matchBackup(int offset, int next) {
+    int endOfComponentId = matchComponentId(offset);
+    if (endOfComponentId < 0 || endOfComponentId >= line.length() ||
+        !isSlash(line.charAt(endOfComponentId))) {
+      return next;
+    }
+    int simpleDocStart = endOfComponentId + 1;
+    if (!regionMatches(simpleDocStart, SIMPLEDOC_PREFIX)) {
+      return next;
+    }
+    int digitsStart = simpleDocStart + SIMPLEDOC_PREFIX.length();
+    int end = endOfDigits(digitsStart);
+    if (end == digitsStart) {
+      return next;
+    }
+    backups = add(backups, new Location(line.substring(offset, endOfComponentId),
+        line.substring(simpleDocStart, end), null));
+    return end;
+  }
+
+  private int endOfLetters(int offset) {
+    while (offset < line.length() && isLetter(line.charAt(offset))) {
+      offset++;
+    }
+    return offset;
+  }
+
+  private int endOfDigits(int offset) {
+    while (offset < line.length() && isDigit(line.charAt(offset))) {
+      offset++;
+    }
+    return offset;
+  }
+
+  /**
+   * Indicates if the line contains at the given offset the given lower case text, the letters
+   * being compared without case as the (?i) flag does (ASCII letters only).
+   */
+  private boolean regionMatches(int offset, String lowerCaseText) {
+    if (offset + lowerCaseText.length() > line.length()) {
+      return false;
+    }
+    for (int i = 0; i < lowerCaseText.length(); i++) {
+      char c = line.charAt(offset + i);
+      char expected = lowerCaseText.charAt(i);
+      if (c != expected && !(isLetter(c) && (c | 0x20) == expected)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isLetter(char c) {
+    char lowerCase = (char) (c | 0x20);
+    return lowerCase >= 'a' && lowerCase <= 'z';
+  }
+
+  private static boolean isLetterOrUnderscore(char c) {
+    return c == '_' || isLetter(c);
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isSlash(char c) {
+    return c == '/' || c == '\\';
+  }
+
+  private static <T> List<T> add(List<T> list, T value) {
+    List<T> result = list.isEmpty() ? new ArrayList<T>(2) : list;
+    result.add(value);
+    return result;
+  }
+
+  /**
+   * The parsing of the line with the regular expressions.
+   */
+  private ParsedLine match() {
+    for (Marker marker : Marker.values()) {
+      if (line.contains(marker.getText())) {
+        markers.add(marker);
+      }
+    }
+    componentIds = findAll(REGEXP_COMPONENT_ID);
+    simpleDocIds = findAll(REGEXP_SIMPLEDOC_ID);
+    wysiwygNames = findAll(REGEXP_WYSIWYG_NAME);
+    operationWysiwygNames = findAll(REGEXP_OPERATION_WYSIWYG_ALL);
+    pathLanguages = findAll(REGEXP_PATH_LANGUAGE);
+    wysiwygLanguages = findAll(REGEXP_WYSIWYG_LANGUAGE);
+    startedComponentIds = findAll(DataWiring.REGEXP_NEW_COMPONENT_DETECTOR);
+    endedComponentIds = findAll(DataWiring.REGEXP_END_COMPONENT_DETECTOR);
+    Matcher matcher = REGEXP_OPERATION.matcher(line);
+    while (matcher.find()) {
+      operations = add(operations,
+          new Location(matcher.group(1), matcher.group(2), matcher.group(3)));
+    }
+    matcher = REGEXP_BACKUP.matcher(line);
+    while (matcher.find()) {
+      backups = add(backups, new Location(matcher.group(1), matcher.group(2), null));
+    }
+    return this;
+  }
+
+  private List<String> findAll(Pattern pattern) {
+    List<String> result = Collections.emptyList();
+    Matcher matcher = pattern.matcher(line);
+    while (matcher.find()) {
+      result = add(result, matcher.group(1));
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "markers=" + markers + ", componentIds=" + componentIds + ", simpleDocIds=" +
+        simpleDocIds + ", wysiwygNames=" + wysiwygNames + ", operationWysiwygNames=" +
+        operationWysiwygNames + ", pathLanguages=" + pathLanguages + ", wysiwygLanguages=" +
+        wysiwygLanguages + ", operations=" + operations + ", backups=" + backups +
+        ", startedComponentIds=" + startedComponentIds + ", endedComponentIds=" +
+        endedComponentIds;
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.dbBuilder.wysiwyg.adjustment;
+
+/**
+ * The simpledoc or the pair of simpledocs (source and target) concerned by a
+ * {@link WysiwygRelation}.
+ * <p>
+ * The hash code is the one of the text the relation was formerly stored as ("source" or
+ * "source -> target"), so that a hash set of relations is iterated in the same order as the
+ * former set of texts, and so the report is unchanged.
+ */
+class SimpleDocRelation {
+
+  private static final String ARROW = " -> ";
+
+  private final String source;
+  private final String target;
+
+  /**
+   * @param source the source simpledoc.
+   * @param target the target simpledoc, null if the relation concerns only one simpledoc.
+   */
+  SimpleDocRelation(final String source, final String target) {
+    this.source = source;
+    this.target = target;
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  public String getTarget() {
+    return target;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof SimpleDocRelation)) {
+      return false;
+    }
+    final SimpleDocRelation other = (SimpleDocRelation) o;
+    return source.equals(other.source) &&
+        (target == null ? other.target == null : target.equals(other.target));
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = source.hashCode();
+    if (target != null) {
+      hash = hash(hash, ARROW);
+      hash = hash(hash, target);
+    }
+    return hash;
+  }
+
+  /**
+   * Continues the computing of a {@link String#hashCode()} with the characters of a text.
+   */
+  private static int hash(int hash, String text) {
+    for (int i = 0; i < text.length(); i++) {
+      hash = 31 * hash + text.charAt(i);
+    }
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return target == null ? source : source + ARROW + target;
+  }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.dbBuilder.wysiwyg.adjustment;
+
+import org.apache.commons.io.FileUtils;
+import org.silverpeas.tools.util.Compression;
+import org.silverpeas.tools.util.ReportWriter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Exports the statistics of the wysiwyg adjustment as records, written one by one as they are
+ * given (nothing is kept in memory but the record being written), for the tools which can not
+ * read the text report.
+ * <p>
+ * All the records have a "type" field (component, sharedBasename, potentialLoss, relation or
+ * summary) and a subset of the other {@link Column}s. In JSON lines, a record is an object
+ * without the fields it does not have; in CSV, a record is a row of all the columns of the header
+ * line, the fields it does not have being empty and the lists being separated by spaces.
+ */
+class StatisticsExporter implements Closeable {
+
+  /**
+   * The formats of the export.
+   */
+  enum Format {
+    JSONL("jsonl"),
+    CSV("csv");
+
+    private final String extension;
+
+    Format(final String extension) {
+      this.extension = extension;
+    }
+
+    public String getExtension() {
+      return extension;
+    }
+  }
+
+  /**
+   * The fields of the records.
+   */
+  enum Column {
+    TYPE("type"),
+    ACTION("action"),
+    COMPONENT("component"),
+    WYSIWYG_BASENAME("wysiwygBasename"),
+    SOURCE_LANGUAGE("sourceLanguage"),
+    SOURCE_WYSIWYG("sourceWysiwyg"),
+    TARGET_LANGUAGE("targetLanguage"),
+    TARGET_WYSIWYG("targetWysiwyg"),
+    SOURCE_SIMPLEDOC("sourceSimpledoc"),
+    SOURCE_STATUS("sourceStatus"),
+    TARGET_SIMPLEDOC("targetSimpledoc"),
+    TARGET_STATUS("targetStatus"),
+    NB_SIMPLEDOCS("nbSimpledocs"),
+    NB_WYSIWYG_BASENAMES("nbWysiwygBasenames"),
+    NB_COMPONENTS("nbComponents"),
+    NB_DELETED_SIMPLEDOCS("nbDeletedSimpledocs"),
+    COMPONENTS("components"),
+    SIMPLEDOCS("simpledocs"),
+    DELETED_SIMPLEDOCS("deletedSimpledocs");
+
+    private final String name;
+
+    Column(final String name) {
+      this.name = name;
+    }
+
+    public String getName() {
+      return name;
+    }
+  }
+
+  private final ReportWriter writer;
+  private final Format format;
+  // The CSV fields of the current record, indexed by column
+  private final Object[] row = new Object[Column.values().length];
+  private boolean firstField;
+
+  /**
+   * Gets the format of the export requested by the statsExport system property, to be verified
+   * before the treatments.
+   * @return the requested format, null if no export is requested.
+   * @throws IllegalArgumentException if the format is neither jsonl nor csv.
+   */
+  static Format getRequestedFormat() {
+    String requestedFormat = System.getProperty("statsExport");
+    if (requestedFormat == null) {
+      return null;
+    }
+    for (Format format : Format.values()) {
+      if (format.getExtension().equalsIgnoreCase(requestedFormat.trim())) {
+        return format;
+      }
+    }
+    throw new IllegalArgumentException(
+        "Unknown statistics export format " + requestedFormat + " for statsExport (expected " +
+            "jsonl or csv)");
+  }
+
+  /**
+   * Opens an exporter if an export is requested. The file is given by the statsExportFile system
+   * property, otherwise it is the given rewritten log file with the extension of the format
+   * instead of the one of its compression.
+   * @param rewrittenLogs the rewritten dbBuilder.log file.
+   * @param format the requested format, null if no export is requested.
+   * @return the opened exporter, null if no export is requested.
+   */
+  static StatisticsExporter open(File rewrittenLogs, Format format) throws IOException {
+    if (format == null) {
+      return null;
+    }
+    String exportPath = System.getProperty("statsExportFile");
+    File exportFile = exportPath != null ? new File(exportPath) :
+        new File(Compression.removeExtension(rewrittenLogs.getPath()) + "." +
+            format.getExtension());
+    return new StatisticsExporter(
+        new ReportWriter(FileUtils.openOutputStream(exportFile), StandardCharsets.UTF_8), format);
+  }
+
+  private StatisticsExporter(final ReportWriter writer, final Format format) throws IOException {
+    this.writer = writer;
+    this.format = format;
+    if (format == Format.CSV) {
+      for (Column column : Column.values()) {
+        if (column.ordinal() > 0) {
+          writer.append(',');
+        }
+        writer.append(column.getName());
+      }
+      writer.append('\n');
+    }
+  }
+
+  /**
+   * Starts a record.
+   * @param type the type of the record.
+   * @return the exporter itself.
+   */
+  StatisticsExporter start(String type) throws IOException {
+    if (format == Format.JSONL) {
+      writer.append('{');
+      firstField = true;
+    }
+    return field(Column.TYPE, type);
+  }
+
+  /**
+   * Sets a text field of the current record, ignored if the value is null.
+   */
+  StatisticsExporter field(Column column, String value) throws IOException {
+    if (value != null) {
+      if (format == Format.CSV) {
+        row[column.ordinal()] = value;
+      } else {
+        appendJsonName(column);
+        appendJsonString(value);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Sets a number field of the current record.
+   */
+  StatisticsExporter field(Column column, long value) throws IOException {
+    if (format == Format.CSV) {
+      row[column.ordinal()] = value;
+    } else {
+      appendJsonName(column);
+      writer.append(value);
+    }
+    return this;
+  }
+
+  /**
+   * Sets a list field of the current record.
+   */
+  StatisticsExporter field(Column column, Collection<String> values) throws IOException {
+    if (format == Format.CSV) {
+      row[column.ordinal()] = values;
+    } else {
+      appendJsonName(column);
+      writer.append('[');
+      boolean first = true;
+      for (String value : values) {
+        if (!first) {
+          writer.append(',');
+        }
+        appendJsonString(value);
+        first = false;
+      }
+      writer.append(']');
+    }
+    return this;
+  }
+
+  /**
+   * Ends the current record, which is written.
+   */
+  void end() throws IOException {
+    if (format == Format.JSONL) {
+      writer.append("}\n");
+      return;
+    }
+    for (int i = 0; i < row.length; i++) {
+      if (i > 0) {
+        writer.append(',');
+      }
+      Object value = row[i];
+      if (value instanceof Collection) {
+        StringBuilder values = new StringBuilder();
+        for (Object item : (Collection<?>) value) {
+          if (values.length() > 0) {
+            values.append(' ');
+          }
+          values.append(item);
+        }
+        appendCsvString(values.toString());
+      } else if (value instanceof String) {
+        appendCsvString((String) value);
+      } else if (value != null) {
+        writer.append((Long) value);
+      }
+    }
+    writer.append('\n');
+    Arrays.fill(row, null);
+  }
+
+  private void appendJsonName(Column column) throws IOException {
+    if (!firstField) {
+      writer.append(',');
+    }
+    firstField = false;
+    writer.append('"').append(column.getName()).append("\":");
+  }
+
+  private void appendJsonString(String value) throws IOException {
+    writer.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        writer.append('\\').append(c);
+      } else if (c < 0x20) {
+        writer.append(String.format("\\u%04x", (int) c));
+      } else {
+        writer.append(c);
+      }
+    }
+    writer.append('"');
+  }
+
+  private void appendCsvString(String value) throws IOException {
+    boolean quoted = false;
+    for (int i = 0; i < value.length() && !quoted; i++) {
+      char c = value.charAt(i);
+      quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+    }
+    if (!quoted) {
+      writer.append(value);
+      return;
+    }
+    writer.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"') {
+        writer.append('"');
+      }
+      writer.append(c);
+    }
+    writer.append('"');
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.dbBuilder.wysiwyg.adjustment;
+
+import org.silverpeas.tools.util.ReportWriter;
+
+import java.io.IOException;
+
+/**
+ * A relation between two wysiwyg files of a component, as a merge, a copy, a translation or a
+ * renaming performed by the adjustment. The relation is rendered as text only when the report
+ * is written.
+ */
+class WysiwygRelation {
+
+  private final String sourceLanguage;
+  private final String sourceWysiwyg;
+  private final String targetLanguage;
+  private final String targetWysiwyg;
+
+  /**
+   * Gets the relation between a wysiwyg file of a language path and a one of another language
+   * path.
+   */
+  static WysiwygRelation between(String sourceLanguage, String sourceWysiwyg,
+      String targetLanguage, String targetWysiwyg) {
+    return new WysiwygRelation(sourceLanguage, sourceWysiwyg, targetLanguage, targetWysiwyg);
+  }
+
+  /**
+   * Gets the relation between a wysiwyg file and its new name in the same language path.
+   */
+  static WysiwygRelation renaming(String language, String sourceWysiwyg, String targetWysiwyg) {
+    return new WysiwygRelation(language, sourceWysiwyg, null, targetWysiwyg);
+  }
+
+  private WysiwygRelation(final String sourceLanguage, final String sourceWysiwyg,
+      final String targetLanguage, final String targetWysiwyg) {
+    this.sourceLanguage = sourceLanguage;
+    this.sourceWysiwyg = sourceWysiwyg;
+    this.targetLanguage = targetLanguage;
+    this.targetWysiwyg = targetWysiwyg;
+  }
+
+  public String getSourceLanguage() {
+    return sourceLanguage;
+  }
+
+  public String getSourceWysiwyg() {
+    return sourceWysiwyg;
+  }
+
+  /**
+   * @return the language of the target path, null for a renaming.
+   */
+  public String getTargetLanguage() {
+    return targetLanguage;
+  }
+
+  public String getTargetWysiwyg() {
+    return targetWysiwyg;
+  }
+
+  /**
+   * Writes the relation into the report.
+   * @param report the report.
+   */
+  void writeTo(ReportWriter report) throws IOException {
+    if (targetLanguage == null) {
+      report.append("original path ").append(sourceLanguage).append(", file ")
+          .append(sourceWysiwyg).append(" to ").append(targetWysiwyg);
+    } else {
+      report.append("path ").append(sourceLanguage).append(", file ").append(sourceWysiwyg)
+          .append(" to path ").append(targetLanguage).append(", file ").append(targetWysiwyg);
+    }
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof WysiwygRelation)) {
+      return false;
+    }
+    final WysiwygRelation other = (WysiwygRelation) o;
+    return sourceLanguage.equals(other.sourceLanguage) &&
+        sourceWysiwyg.equals(other.sourceWysiwyg) && targetWysiwyg.equals(other.targetWysiwyg) &&
+        (targetLanguage == null ? other.targetLanguage == null :
+            targetLanguage.equals(other.targetLanguage));
+  }
+
+  @Override
+  public int hashCode() {
+    int result = sourceLanguage.hashCode();
+    result = 31 * result + sourceWysiwyg.hashCode();
+    result = 31 * result + (targetLanguage != null ? targetLanguage.hashCode() : 0);
+    result = 31 * result + targetWysiwyg.hashCode();
+    return result;
+  }
+}
@@ -24,10 +24,10 @@
 package org.silverpeas.tools.dbBuilder.wysiwyg.purge;
 
 import org.apache.commons.io.IOUtils;
+import org.silverpeas.tools.util.Compression;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -69,7 +69,7 @@ public class DataWiring {
    * Executing treatments
    */
   private DataWiring execute() throws Exception {
-    BufferedReader dbBuilderLogsReader = IOUtils.toBufferedReader(new FileReader(dbBuilderLogs));
+    BufferedReader dbBuilderLogsReader = Compression.openReader(dbBuilderLogs);
     try {
       String line = "initialisation to start ...";
       do {
@@ -114,20 +114,18 @@ public class DataWiring {
 
   /**
    * Retrieve from a line the component id.
+   * The line is tokenized once and the first component id of the line which is a wired
+   * component is returned.
    * @param line
    * @return
    */
   public String getComponentIdFromLine(String line) {
     Matcher componentMatcher = REGEXP_COMPONENT_ID.matcher(line);
-    for (String componentId : components) {
-      while (componentMatcher.find()) {
-        String extractedComponentId = componentMatcher.group(1);
-        if (extractedComponentId.equals(componentId)) {
-          return componentId;
-        }
+    while (componentMatcher.find()) {
+      String extractedComponentId = componentMatcher.group(1);
+      if (components.contains(extractedComponentId)) {
+        return extractedComponentId;
       }
-
-      componentMatcher.reset();
     }
     return null;
   }
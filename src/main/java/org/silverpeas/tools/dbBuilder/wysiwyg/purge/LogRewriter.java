@@ -26,12 +26,12 @@ package org.silverpeas.tools.dbBuilder.wysiwyg.purge;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.silverpeas.tools.util.Compression;
 import org.silverpeas.tools.util.Config;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileReader;
+import java.io.OutputStream;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -43,6 +43,7 @@ import java.util.regex.Matcher;
 public class LogRewriter {
 
   private final File dbBuilderLogs;
+  private final Compression outputCompression;
   private File rewrittenDbBuilderLogs;
   private DataWiring dataWiring;
 
@@ -65,11 +66,14 @@ public class LogRewriter {
       throw new IllegalArgumentException("given dbBuilder log file is not a physical file ...");
     }
     this.dbBuilderLogs = dbBuilderLogs;
+    this.outputCompression = Compression.fromProperty("compressOutput");
     String parentPath = dbBuilderLogs.getParentFile().getAbsolutePath();
-    String fileBasename = FilenameUtils.getBaseName(dbBuilderLogs.getName());
-    String fileExtension = FilenameUtils.getExtension(dbBuilderLogs.getName());
+    String fileName = Compression.removeExtension(dbBuilderLogs.getName());
+    String fileBasename = FilenameUtils.getBaseName(fileName);
+    String fileExtension = FilenameUtils.getExtension(fileName);
     this.rewrittenDbBuilderLogs = FileUtils.getFile(parentPath,
-        fileBasename + "_" + Config.getFormattedExecutionStart() + "." + fileExtension);
+        fileBasename + "_" + Config.getFormattedExecutionStart() + "." + fileExtension +
+            outputCompression.getFileSuffix());
   }
 
   /**
@@ -78,9 +82,9 @@ public class LogRewriter {
   private LogRewriter execute() throws Exception {
     dataWiring = DataWiring.execute(dbBuilderLogs);
 
-    BufferedReader dbBuilderLogsReader = IOUtils.toBufferedReader(new FileReader(dbBuilderLogs));
+    BufferedReader dbBuilderLogsReader = Compression.openReader(dbBuilderLogs);
     try {
-      FileOutputStream dbBuilderLogsOS = FileUtils.openOutputStream(rewrittenDbBuilderLogs);
+      OutputStream dbBuilderLogsOS = outputCompression.openOutputStream(rewrittenDbBuilderLogs);
       try {
 
         if (Boolean.valueOf(System.getProperty("statsOnly"))) {
@@ -76,7 +76,7 @@ public class Executor {
     while (argsIt.hasNext()) {
       String currentArg = argsIt.next();
       if (currentArg.startsWith("-")) {
-        config.set(currentArg.substring(1), Long.parseLong(argsIt.next()));
+        config.set(currentArg.substring(1), argsIt.next());
       } else {
         files.add(currentArg);
       }
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.file.lastmodifieddate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Binary journal of the last modified dates updated by a run: for each updated file, its
+ * absolute path, its previous date and its new date.
+ * <p>
+ * The records are first written into a batch owned by the updating thread, and a batch is
+ * appended to the journal file under a lock once it is full, so the threads do not contend for
+ * each update. So that a crash loses only the last updates, all the batches are also appended and
+ * the journal file is flushed every {@link #FLUSH_PERIOD} milliseconds: the records not written
+ * yet are at most the ones of the updates of the last period.
+ */
+class Journal implements Closeable {
+
+  private static final int MAGIC = 0x534c4d44;
+  private static final int BATCH_SIZE = 1024;
+  static final long FLUSH_PERIOD = 1000;
+
+  /**
+   * A record of the journal.
+   */
+  static class Record {
+    final String path;
+    final long oldDate;
+    final long newDate;
+
+    private Record(final String path, final long oldDate, final long newDate) {
+      this.path = path;
+      this.oldDate = oldDate;
+      this.newDate = newDate;
+    }
+  }
+
+  private static class Batch {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(BATCH_SIZE * 64);
+    private final DataOutputStream data = new DataOutputStream(bytes);
+    private int nbRecords = 0;
+  }
+
+  private final DataOutputStream output;
+  private final ScheduledExecutorService flusher;
+  private volatile IOException flushError;
+  private final List<Batch> batches = Collections.synchronizedList(new ArrayList<>());
+  private final ThreadLocal<Batch> currentBatch = ThreadLocal.withInitial(() -> {
+    Batch batch = new Batch();
+    batches.add(batch);
+    return batch;
+  });
+
+  /**
+   * Creates the journal, replacing any existing file.
+   * @param journalFile the journal file.
+   * @return the created journal.
+   * @throws IOException on error.
+   */
+  static Journal create(Path journalFile) throws IOException {
+    return new Journal(journalFile);
+  }
+
+  private Journal(final Path journalFile) throws IOException {
+    output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(journalFile)));
+    output.writeInt(MAGIC);
+    flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "journal-flusher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    flusher.scheduleWithFixedDelay(this::flushPeriodically, FLUSH_PERIOD, FLUSH_PERIOD,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Records the update of the date of a file.
+   * @param path the updated file.
+   * @param oldDate the time of the previous date.
+   * @param newDate the time of the new date.
+   * @throws IOException on writing error.
+   */
+  void record(Path path, long oldDate, long newDate) throws IOException {
+    if (flushError != null) {
+      throw flushError;
+    }
+    Batch batch = currentBatch.get();
+    // The lock of the batch is contended only by the periodic flush
+    synchronized (batch) {
+      batch.data.writeUTF(path.toAbsolutePath().toString());
+      batch.data.writeLong(oldDate);
+      batch.data.writeLong(newDate);
+      if (++batch.nbRecords >= BATCH_SIZE) {
+        write(batch);
+      }
+    }
+  }
+
+  private synchronized void write(Batch batch) throws IOException {
+    batch.bytes.writeTo(output);
+    batch.bytes.reset();
+    batch.nbRecords = 0;
+  }
+
+  /**
+   * Appends all the batches and flushes the journal file.
+   */
+  private void flush() throws IOException {
+    synchronized (batches) {
+      for (Batch batch : batches) {
+        synchronized (batch) {
+          if (batch.nbRecords > 0) {
+            write(batch);
+          }
+        }
+      }
+    }
+    synchronized (this) {
+      output.flush();
+    }
+  }
+
+  private void flushPeriodically() {
+    try {
+      flush();
+    } catch (IOException e) {
+      System.err.println("Can not write the journal: " + e.getMessage());
+      flushError = e;
+      flusher.shutdown();
+    }
+  }
+
+  /**
+   * Writes the batches not full yet and closes the journal file. It must be called once all the
+   * updating threads are done.
+   * @throws IOException on writing error.
+   */
+  @Override
+  public void close() throws IOException {
+    // The flusher is not interrupted: an interrupted write would close the journal file
+    flusher.shutdown();
+    try {
+      flusher.awaitTermination(1, TimeUnit.MINUTES);
+      flush();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while closing the journal");
+    } finally {
+      output.close();
+    }
+  }
+
+  /**
+   * Reads the records of a journal by batches.
+   * @param journalFile the journal file.
+   * @param consumer the consumer of the batches of records.
+   * @throws IOException on reading error.
+   */
+  static void read(Path journalFile, Consumer<List<Record>> consumer) throws IOException {
+    try (DataInputStream input = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(journalFile)))) {
+      if (input.readInt() != MAGIC) {
+        throw new IOException(journalFile + " is not a journal of last modified dates");
+      }
+      List<Record> records = new ArrayList<>(BATCH_SIZE);
+      while (true) {
+        String path;
+        try {
+          path = input.readUTF();
+        } catch (EOFException e) {
+          break;
+        }
+        records.add(new Record(path, input.readLong(), input.readLong()));
+        if (records.size() >= BATCH_SIZE) {
+          consumer.accept(records);
+          records = new ArrayList<>(BATCH_SIZE);
+        }
+      }
+      if (!records.isEmpty()) {
+        consumer.accept(records);
+      }
+    }
+  }
+}
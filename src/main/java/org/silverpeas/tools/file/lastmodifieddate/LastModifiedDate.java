@@ -23,25 +23,46 @@
  */
 package org.silverpeas.tools.file.lastmodifieddate;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.FileFilterUtils;
 import org.apache.commons.lang3.time.DateUtils;
+import org.silverpeas.tools.util.FileTreeWalker;
+import org.silverpeas.tools.util.NameFilter;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 /**
  * @author Yohann Chastagnier
  */
-public class LastModifiedDate {
+public class LastModifiedDate implements FileTreeWalker.Visitor {
 
   private File current = new File(".");
-  private List<File> files = new ArrayList<>();
+  private List<Path> files = new ArrayList<>();
   private Config config;
+  private long newLastModifiedDate;
+  private Journal journal;
+  private final LongAdder nbFiles = new LongAdder();
+  private final LongAdder nbDirectories = new LongAdder();
+  private final LongAdder nbUpdated = new LongAdder();
+  private final LongAdder nbUnchanged = new LongAdder();
+  private final LongAdder nbFailed = new LongAdder();
+  private final Map<Integer, LongAdder> distribution = new ConcurrentHashMap<>();
 
   public static LastModifiedDate execute(final Config config, final List<String> paths)
       throws Exception {
@@ -53,27 +74,135 @@ public class LastModifiedDate {
     this.config = config;
     files.addAll(paths.stream().map(path -> {
       File currentPath = new File(path);
-      return currentPath.getPath().equals(currentPath.getAbsolutePath()) ? currentPath :
-          new File(current, path);
+      return (currentPath.getPath().equals(currentPath.getAbsolutePath()) ? currentPath :
+          new File(current, path)).toPath();
     }).collect(Collectors.toList()));
   }
 
   private LastModifiedDate execute() throws Exception {
-    long newLastModifiedDate = config.getTranslatedDate().getTime();
-    for (File currentFile : files) {
-      if (currentFile.isFile()) {
-        currentFile.setLastModified(newLastModifiedDate);
-      } else if (currentFile.isDirectory()) {
-        for (File file : FileUtils.listFilesAndDirs(currentFile, FileFilterUtils.trueFileFilter(),
-            FileFilterUtils.trueFileFilter())) {
-          file.setLastModified(newLastModifiedDate);
-        }
+    if (config.getRollbackJournal() != null) {
+      rollback();
+      return this;
+    }
+    newLastModifiedDate = config.getTranslatedDate().getTime();
+    if (config.getJournalFile() != null && !config.isDryRun()) {
+      journal = Journal.create(config.getJournalFile());
+    }
+    try {
+      new FileTreeWalker(this, config.getNbThreads()).walk(files);
+    } finally {
+      if (journal != null) {
+        journal.close();
+      }
+    }
+    if (config.isDryRun()) {
+      System.out.println(nbFiles.sum() + " files and " + nbDirectories.sum() + " directories: " +
+          nbUpdated.sum() + " would be updated, " + nbUnchanged.sum() + " unchanged.");
+      System.out.println("Distribution of the new dates by month:");
+      new TreeMap<>(distribution).forEach((month, nbDates) -> System.out
+          .println(String.format("  %d-%02d: %d", month / 100, month % 100, nbDates.sum())));
+    } else {
+      System.out.println(nbFiles.sum() + " files and " + nbDirectories.sum() + " directories: " +
+          nbUpdated.sum() + " updated, " + nbUnchanged.sum() + " unchanged, " + nbFailed.sum() +
+          " failed.");
+      if (journal != null) {
+        System.out.println("Previous dates recorded into " + config.getJournalFile());
       }
     }
     return this;
   }
 
+  /**
+   * Restores the previous dates recorded into a journal. The batches of records are replayed by
+   * several threads, the number of batches read in advance being bounded.
+   */
+  private void rollback() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(config.getNbThreads());
+    Semaphore pendingBatches = new Semaphore(config.getNbThreads() * 2);
+    LongAdder nbRestored = new LongAdder();
+    LongAdder nbFailed = new LongAdder();
+    try {
+      Journal.read(config.getRollbackJournal(), records -> {
+        pendingBatches.acquireUninterruptibly();
+        executor.execute(() -> {
+          try {
+            for (Journal.Record record : records) {
+              if (new File(record.path).setLastModified(record.oldDate)) {
+                nbRestored.increment();
+              } else {
+                nbFailed.increment();
+              }
+            }
+          } finally {
+            pendingBatches.release();
+          }
+        });
+      });
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    }
+    System.out.println(nbRestored.sum() + " dates restored, " + nbFailed.sum() + " failed.");
+  }
+
+  @Override
+  public boolean visitDirectory(final Path dir, final BasicFileAttributes attrs)
+      throws IOException {
+    if (!config.getDirFilter().accept(dir)) {
+      return false;
+    }
+    if (config.isDateAccepted(attrs)) {
+      update(dir, attrs);
+      nbDirectories.increment();
+    }
+    return true;
+  }
+
+  @Override
+  public void visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+    if (config.getFileFilter().accept(file) && config.isDateAccepted(attrs) &&
+        config.isSizeAccepted(attrs)) {
+      update(file, attrs);
+      nbFiles.increment();
+    }
+  }
+
+  private void update(Path path, BasicFileAttributes attrs) throws IOException {
+    long oldDate = attrs.lastModifiedTime().toMillis();
+    long newDate = getNewLastModifiedDate(attrs);
+    if (oldDate == newDate) {
+      // The date read during the walk is already the right one, no need to write it again
+      nbUnchanged.increment();
+      return;
+    }
+    if (config.isDryRun()) {
+      Calendar calendar = Config.CALENDAR.get();
+      calendar.setTimeInMillis(newDate);
+      int month = calendar.get(Calendar.YEAR) * 100 + calendar.get(Calendar.MONTH) + 1;
+      distribution.computeIfAbsent(month, m -> new LongAdder()).increment();
+      nbUpdated.increment();
+      return;
+    }
+    if (path.toFile().setLastModified(newDate)) {
+      nbUpdated.increment();
+      if (journal != null) {
+        journal.record(path, oldDate, newDate);
+      }
+    } else {
+      System.err.println("Can not update the date of " + path);
+      nbFailed.increment();
+    }
+  }
+
+  private long getNewLastModifiedDate(BasicFileAttributes attrs) {
+    return config.isRelative() ? config.translate(attrs.lastModifiedTime().toMillis()) :
+        newLastModifiedDate;
+  }
+
   public static class Config {
+    private static final ThreadLocal<Calendar> CALENDAR =
+        ThreadLocal.withInitial(Calendar::getInstance);
+
     private Date dateToTranslate = new Date();
     private int nbMilliseconds = 0;
     private int nbSeconds = 0;
@@ -83,6 +212,20 @@ public class LastModifiedDate {
     private int nbWeeks = 0;
     private int nbMonths = 0;
     private int nbYears = 0;
+    private int nbThreads = 1;
+    private boolean relative = false;
+    private boolean dryRun = false;
+    private Path journalFile;
+    private Path rollbackJournal;
+    private NameFilter fileFilter = NameFilter.ALL;
+    private NameFilter dirFilter = NameFilter.ALL;
+    private long olderThan = -1;
+    private long newerThan = -1;
+    private long minSize = -1;
+
+    public int getNbThreads() {
+      return nbThreads;
+    }
 
     public Date getTranslatedDate() {
       Date translatedDate = DateUtils.addMilliseconds(dateToTranslate, nbMilliseconds);
@@ -96,6 +239,106 @@ public class LastModifiedDate {
       return translatedDate;
     }
 
+    public boolean isRelative() {
+      return relative;
+    }
+
+    public boolean isDryRun() {
+      return dryRun;
+    }
+
+    public Path getJournalFile() {
+      return journalFile;
+    }
+
+    public Path getRollbackJournal() {
+      return rollbackJournal;
+    }
+
+    public NameFilter getFileFilter() {
+      return fileFilter;
+    }
+
+    public NameFilter getDirFilter() {
+      return dirFilter;
+    }
+
+    /**
+     * Indicates if the last modified date of a file or of a folder is in the range given by the
+     * olderThan and newerThan parameters. A folder which date is out of the range is not updated
+     * but its content is still walked.
+     * @param attrs the attributes read during the walk.
+     * @return true if accepted, false otherwise.
+     */
+    public boolean isDateAccepted(BasicFileAttributes attrs) {
+      long lastModified = attrs.lastModifiedTime().toMillis();
+      return (olderThan < 0 || lastModified < olderThan) &&
+          (newerThan < 0 || lastModified > newerThan);
+    }
+
+    /**
+     * Indicates if the size of a file is at least the one given by the minSize parameter.
+     * @param attrs the attributes read during the walk.
+     * @return true if accepted, false otherwise.
+     */
+    public boolean isSizeAccepted(BasicFileAttributes attrs) {
+      return minSize < 0 || attrs.size() >= minSize;
+    }
+
+    /**
+     * Translates the given date by the offsets, in the same order as {@link #getTranslatedDate()}
+     * does. The offsets of fixed duration are added directly to the time and the calendar offsets
+     * are added with a calendar reused by the current thread, so no object is created per date.
+     * @param date the time of the date to translate.
+     * @return the time of the translated date.
+     */
+    public long translate(long date) {
+      long translated = date + nbMilliseconds + nbSeconds * 1000L + nbMinutes * 60000L +
+          nbHours * 3600000L;
+      if (nbDays == 0 && nbWeeks == 0 && nbMonths == 0 && nbYears == 0) {
+        return translated;
+      }
+      Calendar calendar = CALENDAR.get();
+      calendar.setTimeInMillis(translated);
+      calendar.add(Calendar.DAY_OF_MONTH, nbDays);
+      calendar.add(Calendar.WEEK_OF_YEAR, nbWeeks);
+      calendar.add(Calendar.MONTH, nbMonths);
+      calendar.add(Calendar.YEAR, nbYears);
+      return calendar.getTimeInMillis();
+    }
+
+    public Config set(String directive, String value) {
+      switch (directive) {
+        case "relative":
+          relative = parseBoolean(directive, value);
+          break;
+        case "dryRun":
+          dryRun = parseBoolean(directive, value);
+          break;
+        case "journal":
+          journalFile = Paths.get(value);
+          break;
+        case "rollback":
+          rollbackJournal = Paths.get(value);
+          break;
+        case "fileFilter":
+          fileFilter = NameFilter.matching(value);
+          break;
+        case "dirFilter":
+          dirFilter = NameFilter.matching(value);
+          break;
+        case "!fileFilter":
+          fileFilter = NameFilter.notMatching(value);
+          break;
+        case "!dirFilter":
+          dirFilter = NameFilter.notMatching(value);
+          break;
+        default:
+          set(directive, Long.parseLong(value));
+      }
+      return this;
+    }
+
     public Config set(String directive, long value) {
       switch (directive) {
         case "ttt":
@@ -126,6 +369,29 @@ public class LastModifiedDate {
         case "oY":
           nbYears = (int) value;
           break;
+        // Execution
+        case "relative":
+          relative = toBoolean(directive, value);
+          break;
+        case "dryRun":
+          dryRun = toBoolean(directive, value);
+          break;
+        case "threads":
+          if (value < 1) {
+            throw new IllegalArgumentException("{-" + directive + "} must be a positive number...");
+          }
+          nbThreads = (int) value;
+          break;
+        // Filters
+        case "olderThan":
+          olderThan = value;
+          break;
+        case "newerThan":
+          newerThan = value;
+          break;
+        case "minSize":
+          minSize = value;
+          break;
         // Set
         case "ms":
           DateUtils.setMilliseconds(dateToTranslate, (int) value);
@@ -155,5 +421,29 @@ public class LastModifiedDate {
       }
       return this;
     }
+
+    /**
+     * Parses a boolean parameter: a tool updating dates in bulk must not take a mistyped value
+     * for false.
+     * @return the boolean given by true or 1, false or 0.
+     * @throws IllegalArgumentException for any other value.
+     */
+    private static boolean parseBoolean(String directive, String value) {
+      if ("true".equalsIgnoreCase(value) || "1".equals(value)) {
+        return true;
+      } else if ("false".equalsIgnoreCase(value) || "0".equals(value)) {
+        return false;
+      }
+      throw new IllegalArgumentException(
+          "{-" + directive + "} with [" + value + "] must be true, false, 1 or 0...");
+    }
+
+    private static boolean toBoolean(String directive, long value) {
+      if (value != 0 && value != 1) {
+        throw new IllegalArgumentException(
+            "{-" + directive + "} with [" + value + "] must be 1 or 0...");
+      }
+      return value == 1;
+    }
   }
 }
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.file.regexpr;
+
+import org.apache.commons.io.input.CountingInputStream;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * Verifies the patterns on the content of a file read chunk by chunk, so that only a bounded
+ * window of characters is held in memory.
+ * <p>
+ * Each chunk is verified with the end of the previous one (the overlap window) prepended, so a
+ * pattern matching a text that is not longer than the overlap is found even when the text
+ * straddles two chunks. Patterns needing a wider context (anchors, long multi-line spans) must
+ * not be verified in this mode.
+ * <p>
+ * The reading stops as soon as the verdict is known: when a negated pattern is found, or when
+ * all the positive patterns have been found and there is no negated pattern to verify up to the
+ * end of the file.
+ */
+class ChunkedVerifier {
+
+  private final Path file;
+  private final BasicFileAttributes attrs;
+  private final RegExprMatcher.Config config;
+  private final List<RegExprMatcher.PatternConfig> patternConfigs;
+  private boolean matched = false;
+  private PatternResults results;
+  private long nbReadBytes = 0;
+  private long nbSkippedBytes = 0;
+
+  /**
+   * Verifies the patterns of the configuration on the given file.
+   * @param file the file to verify.
+   * @param attrs the attributes of the file.
+   * @param config the configuration of the search.
+   * @return the result of the verification.
+   * @throws IOException on reading error.
+   */
+  static ChunkedVerifier verify(Path file, BasicFileAttributes attrs,
+      RegExprMatcher.Config config) throws IOException {
+    return new ChunkedVerifier(file, attrs, config).verify();
+  }
+
+  private ChunkedVerifier(final Path file, final BasicFileAttributes attrs,
+      final RegExprMatcher.Config config) {
+    this.file = file;
+    this.attrs = attrs;
+    this.config = config;
+    this.patternConfigs = config.getPatternConfigs();
+  }
+
+  private ChunkedVerifier verify() throws IOException {
+    int nbPatterns = patternConfigs.size();
+    Matcher[] matchers = new Matcher[nbPatterns];
+    boolean[] found = new boolean[nbPatterns];
+    int nbPositivesToFind = 0;
+    boolean negatedPatterns = false;
+    for (int i = 0; i < nbPatterns; i++) {
+      RegExprMatcher.PatternConfig patternConfig = patternConfigs.get(i);
+      matchers[i] = patternConfig.pattern.matcher("");
+      if (patternConfig.mustMatch) {
+        nbPositivesToFind++;
+      } else {
+        negatedPatterns = true;
+      }
+    }
+
+    int overlap = config.getOverlapSize();
+    char[] window = new char[overlap + config.getChunkSize()];
+    CountingInputStream counter = new CountingInputStream(Files.newInputStream(file));
+    try (Reader reader = new InputStreamReader(counter, config.getCharset())) {
+      int windowLength = 0;
+      boolean endOfFile = false;
+      boolean verdictKnown = false;
+      boolean negatedFound = false;
+      while (!endOfFile && !verdictKnown) {
+        int chunkStart = windowLength;
+        while (windowLength < window.length) {
+          int nbRead = reader.read(window, windowLength, window.length - windowLength);
+          if (nbRead < 0) {
+            endOfFile = true;
+            break;
+          }
+          windowLength += nbRead;
+        }
+        if (windowLength == chunkStart && chunkStart > 0) {
+          break;
+        }
+
+        CharBuffer chars = CharBuffer.wrap(window, 0, windowLength);
+        for (int i = 0; i < nbPatterns && !verdictKnown; i++) {
+          if (!found[i] && matchers[i].reset(chars).find()) {
+            found[i] = true;
+            if (patternConfigs.get(i).mustMatch) {
+              nbPositivesToFind--;
+            } else {
+              negatedFound = true;
+              verdictKnown = true;
+            }
+          }
+        }
+        if (nbPositivesToFind == 0 && !negatedPatterns) {
+          verdictKnown = true;
+        }
+
+        // The end of the window is kept to verify the next chunk
+        int kept = Math.min(overlap, windowLength);
+        System.arraycopy(window, windowLength - kept, window, 0, kept);
+        windowLength = kept;
+      }
+      matched = nbPositivesToFind == 0;
+      for (int i = 0; i < nbPatterns && matched; i++) {
+        matched = patternConfigs.get(i).mustMatch || !found[i];
+      }
+      // Unless all the chunks have been verified by all the patterns, only the found patterns
+      // are known
+      boolean allVerified = endOfFile && !negatedFound;
+      results = new PatternResults(nbPatterns);
+      for (int i = 0; i < nbPatterns; i++) {
+        if (found[i] || allVerified) {
+          results.set(i, found[i]);
+        }
+      }
+    }
+    nbReadBytes = counter.getByteCount();
+    nbSkippedBytes = Math.max(0, attrs.size() - nbReadBytes);
+    return this;
+  }
+
+  /**
+   * Indicates if the file verifies all the patterns.
+   * @return true if matched, false otherwise.
+   */
+  public boolean isMatched() {
+    return matched;
+  }
+
+  /**
+   * Gets the results of the patterns known when the reading stopped.
+   * @return the results of the patterns.
+   */
+  public PatternResults getResults() {
+    return results;
+  }
+
+  /**
+   * Gets the number of bytes read from the disk.
+   * @return a number of bytes.
+   */
+  public long getNbReadBytes() {
+    return nbReadBytes;
+  }
+
+  /**
+   * Gets the number of bytes of the file that have not been read because the verdict was known
+   * before reaching the end of the file.
+   * @return a number of bytes.
+   */
+  public long getNbSkippedBytes() {
+    return nbSkippedBytes;
+  }
+}
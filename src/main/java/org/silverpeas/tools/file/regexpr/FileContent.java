@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.file.regexpr;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+/**
+ * Content of a file, read once from the disk and shared by the verifications of all the
+ * patterns. According to the content mode, the characters are either decoded into a String or
+ * decoded on the fly from a memory-mapped file.
+ */
+class FileContent {
+
+  private final CharSequence chars;
+  private final long nbReadBytes;
+  private final long hash;
+
+  /**
+   * Loads the content of the given file according to the content mode of the configuration.
+   * @param file the file to read.
+   * @param attrs the attributes of the file.
+   * @param config the configuration of the search.
+   * @param hashed true if the hash of the bytes must be computed.
+   * @return the content of the file.
+   * @throws IOException on reading error.
+   */
+  static FileContent load(Path file, BasicFileAttributes attrs, RegExprMatcher.Config config,
+      boolean hashed) throws IOException {
+    switch (config.getContentMode()) {
+      case MAPPED:
+        MappedCharSequence mappedChars = MappedCharSequence.map(file, config.getCharset());
+        return new FileContent(mappedChars, attrs.size(),
+            hashed ? hash(mappedChars.getBytes()) : 0);
+      default:
+        byte[] bytes = Files.readAllBytes(file);
+        return new FileContent(new String(bytes, config.getCharset()), bytes.length,
+            hashed ? hash(ByteBuffer.wrap(bytes)) : 0);
+    }
+  }
+
+  /**
+   * Computes a 64 bits hash of the given bytes, made of their CRC32 and of their Adler32.
+   */
+  private static long hash(ByteBuffer bytes) {
+    CRC32 crc32 = new CRC32();
+    crc32.update(bytes.duplicate());
+    Adler32 adler32 = new Adler32();
+    adler32.update(bytes.duplicate());
+    return (crc32.getValue() << 32) | adler32.getValue();
+  }
+
+  private FileContent(final CharSequence chars, final long nbReadBytes, final long hash) {
+    this.chars = chars;
+    this.nbReadBytes = nbReadBytes;
+    this.hash = hash;
+  }
+
+  /**
+   * Gets the decoded content.
+   * @return the characters of the file.
+   */
+  public CharSequence getChars() {
+    return chars;
+  }
+
+  /**
+   * Gets the number of bytes read from the disk to load the content.
+   * @return a number of bytes.
+   */
+  public long getNbReadBytes() {
+    return nbReadBytes;
+  }
+
+  /**
+   * Gets the hash of the bytes of the content, if it has been asked at loading.
+   * @return the hash.
+   */
+  public long getHash() {
+    return hash;
+  }
+
+  /**
+   * Releases the resources of the content, which must not be accessed anymore. A mapped file is
+   * unmapped.
+   */
+  public void release() {
+    if (chars instanceof MappedCharSequence) {
+      ((MappedCharSequence) chars).release();
+    }
+  }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.file.regexpr;
+
+import org.silverpeas.tools.util.AhoCorasick;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Cheap verification performed before the regular expressions: for each pattern, a literal that
+ * any matching text must contain is extracted, then all the literals are searched in one pass
+ * over the content with an Aho-Corasick automaton. A pattern which literal is not found can not
+ * match, so its costly regular expression verification is useless.
+ * <p>
+ * The extraction is conservative: when the structure of a pattern is not understood (top level
+ * alternation, unicode case or comments flags, ...), no literal is extracted and the pattern is
+ * always considered as a possible match. The literals are searched without ASCII case
+ * sensitivity, so a case insensitive pattern is handled the same way.
+ */
+class LiteralPrefilter {
+
+  private static final int MIN_LITERAL_LENGTH = 3;
+  private static final Pattern UNHANDLED_FLAGS = Pattern.compile("\\(\\?[a-zA-Z-]*[xuU]");
+
+  private final int[] literalIndexes;
+  private final AhoCorasick automaton;
+  private final int nbLiterals;
+
+  /**
+   * Builds the prefilter of the given patterns.
+   * @param patternConfigs the patterns to verify.
+   */
+  LiteralPrefilter(List<RegExprMatcher.PatternConfig> patternConfigs) {
+    List<String> literals = new ArrayList<>();
+    literalIndexes = new int[patternConfigs.size()];
+    for (int i = 0; i < patternConfigs.size(); i++) {
+      String literal = extractRequiredLiteral(patternConfigs.get(i).pattern.pattern());
+      if (literal == null) {
+        literalIndexes[i] = -1;
+      } else {
+        int literalIndex = literals.indexOf(literal);
+        if (literalIndex < 0) {
+          literalIndex = literals.size();
+          literals.add(literal);
+        }
+        literalIndexes[i] = literalIndex;
+      }
+    }
+    nbLiterals = literals.size();
+    automaton = literals.isEmpty() ? null : new AhoCorasick(literals);
+  }
+
+  /**
+   * Indicates if at least one literal has been extracted from the patterns.
+   * @return true if the prefilter is useful, false otherwise.
+   */
+  boolean isUseful() {
+    return automaton != null;
+  }
+
+  /**
+   * Searches the literals of the patterns into the given content.
+   * @param content the content to verify.
+   * @return for each pattern, false if it can not match the content, true if it could.
+   */
+  boolean[] verify(CharSequence content) {
+    boolean[] candidates = new boolean[literalIndexes.length];
+    if (automaton == null) {
+      Arrays.fill(candidates, true);
+      return candidates;
+    }
+    boolean[] found = new boolean[nbLiterals];
+    automaton.search(content, found);
+    for (int i = 0; i < literalIndexes.length; i++) {
+      candidates[i] = literalIndexes[i] < 0 || found[literalIndexes[i]];
+    }
+    return candidates;
+  }
+
+  /**
+   * Extracts from a regular expression the longest literal that any matching text contains.
+   * @param regex the regular expression.
+   * @return the literal in lower case, null if no literal can be extracted safely.
+   */
+  static String extractRequiredLiteral(String regex) {
+    if (UNHANDLED_FLAGS.matcher(regex).find()) {
+      return null;
+    }
+    String longest = "";
+    StringBuilder run = new StringBuilder();
+    // true when the last atom is the last character of the current run
+    boolean lastAtomInRun = false;
+    int length = regex.length();
+    int i = 0;
+    while (i < length) {
+      char c = regex.charAt(i);
+      boolean atomInRun = false;
+      switch (c) {
+        case '\\':
+          if (i + 1 >= length) {
+            return null;
+          }
+          char escaped = regex.charAt(i + 1);
+          if (escaped == 'Q') {
+            int end = regex.indexOf("\\E", i + 2);
+            String quoted = regex.substring(i + 2, end < 0 ? length : end);
+            run.append(quoted);
+            atomInRun = !quoted.isEmpty();
+            i = end < 0 ? length : end + 2;
+          } else if (Character.isLetterOrDigit(escaped)) {
+            longest = longest(longest, run);
+            i = skipEscape(regex, i);
+          } else {
+            run.append(escaped);
+            atomInRun = true;
+            i += 2;
+          }
+          break;
+        case '[':
+          longest = longest(longest, run);
+          i = skipCharacterClass(regex, i);
+          if (i < 0) {
+            return null;
+          }
+          break;
+        case '(':
+          longest = longest(longest, run);
+          i = skipGroup(regex, i);
+          if (i < 0) {
+            return null;
+          }
+          break;
+        case ')':
+        case '|':
+          return null;
+        case '.':
+        case '^':
+        case '$':
+          longest = longest(longest, run);
+          i++;
+          break;
+        case '*':
+        case '?':
+        case '{':
+          if (lastAtomInRun) {
+            // The last character is optional
+            run.setLength(run.length() - 1);
+          }
+          longest = longest(longest, run);
+          i = c == '{' ? regex.indexOf('}', i) + 1 : i + 1;
+          if (i <= 0) {
+            return null;
+          }
+          i = skipQuantifierMode(regex, i);
+          break;
+        case '+':
+          longest = longest(longest, run);
+          i = skipQuantifierMode(regex, i + 1);
+          break;
+        default:
+          run.append(c);
+          atomInRun = true;
+          i++;
+      }
+      lastAtomInRun = atomInRun;
+    }
+    longest = longest(longest, run);
+    return longest.length() >= MIN_LITERAL_LENGTH ? lower(longest) : null;
+  }
+
+  private static String longest(String longest, StringBuilder run) {
+    String result = run.length() > longest.length() ? run.toString() : longest;
+    run.setLength(0);
+    return result;
+  }
+
+  private static int skipQuantifierMode(String regex, int i) {
+    return (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) ? i + 1 :
+        i;
+  }
+
+  /**
+   * Skips an escape sequence which is not a literal one ({@code \d}, {@code \p{L}},
+   * {@code \x41}, {@code \k<name>}...)
+   * @return the index following the escape sequence.
+   */
+  private static int skipEscape(String regex, int i) {
+    char escaped = regex.charAt(i + 1);
+    int next = i + 2;
+    int length = regex.length();
+    switch (escaped) {
+      case 'p':
+      case 'P':
+      case 'x':
+      case 'N':
+        if (next < length && regex.charAt(next) == '{') {
+          int end = regex.indexOf('}', next);
+          return end < 0 ? length : end + 1;
+        }
+        return Math.min(length, next + (escaped == 'x' ? 2 : 1));
+      case 'u':
+        return Math.min(length, next + 4);
+      case 'c':
+        return Math.min(length, next + 1);
+      case 'k':
+        int end = regex.indexOf('>', next);
+        return end < 0 ? length : end + 1;
+      case 'b':
+        if (next < length && regex.charAt(next) == '{') {
+          end = regex.indexOf('}', next);
+          return end < 0 ? length : end + 1;
+        }
+        return next;
+      default:
+        if (Character.isDigit(escaped)) {
+          while (next < length && Character.isDigit(regex.charAt(next))) {
+            next++;
+          }
+        }
+        return next;
+    }
+  }
+
+  /**
+   * Skips a character class, nested classes included.
+   * @return the index following the class, -1 if the class is not closed.
+   */
+  private static int skipCharacterClass(String regex, int i) {
+    int length = regex.length();
+    int depth = 0;
+    int j = i;
+    while (j < length) {
+      char c = regex.charAt(j);
+      if (c == '\\') {
+        j += 2;
+        continue;
+      }
+      if (c == '[') {
+        depth++;
+        j++;
+        // A closing bracket just after the opening one (or its negation) is a literal
+        if (j < length && regex.charAt(j) == '^') {
+          j++;
+        }
+        if (j < length && regex.charAt(j) == ']') {
+          j++;
+        }
+        continue;
+      }
+      if (c == ']') {
+        depth--;
+        if (depth == 0) {
+          return j + 1;
+        }
+      }
+      j++;
+    }
+    return -1;
+  }
+
+  /**
+   * Skips a group, nested groups and classes included.
+   * @return the index following the group, -1 if the group is not closed.
+   */
+  private static int skipGroup(String regex, int i) {
+    int length = regex.length();
+    int depth = 0;
+    int j = i;
+    while (j < length) {
+      char c = regex.charAt(j);
+      if (c == '\\') {
+        if (j + 1 < length && regex.charAt(j + 1) == 'Q') {
+          int end = regex.indexOf("\\E", j + 2);
+          j = end < 0 ? length : end + 2;
+        } else {
+          j += 2;
+        }
+        continue;
+      }
+      if (c == '[') {
+        j = skipCharacterClass(regex, j);
+        if (j < 0) {
+          return -1;
+        }
+        continue;
+      }
+      if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+        if (depth == 0) {
+          return j + 1;
+        }
+      }
+      j++;
+    }
+    return -1;
+  }
+
+  private static String lower(String literal) {
+    StringBuilder sb = new StringBuilder(literal.length());
+    for (int i = 0; i < literal.length(); i++) {
+      char c = literal.charAt(i);
+      sb.append((c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c);
+    }
+    return sb.toString();
+  }
+}
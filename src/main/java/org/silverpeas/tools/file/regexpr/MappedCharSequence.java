@@ -0,0 +1,398 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.file.regexpr;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Character view of a memory-mapped file. The bytes are decoded on the fly when the characters
+ * are accessed, so the content of the file is never copied onto the heap.
+ * <p>
+ * Only US-ASCII, ISO-8859-1 and UTF-8 contents are handled. The malformed or unmappable bytes
+ * are exposed as the U+FFFD replacement character. A file is mapped by one buffer, so it can not
+ * be larger than {@link #MAX_SIZE} bytes.
+ * <p>
+ * The mapping is released by {@link #release()} as soon as the view is no more used, instead of
+ * waiting for the garbage collector, so the number of mappings of the process stays low whatever
+ * the number of mapped files.
+ */
+abstract class MappedCharSequence implements CharSequence {
+
+  /**
+   * The maximum size of a mapped file.
+   */
+  static final long MAX_SIZE = Integer.MAX_VALUE;
+
+  private static final char REPLACEMENT_CHAR = '\uFFFD';
+  private static final Unmapper UNMAPPER = lookupUnmapper();
+
+  /**
+   * Indicates if the given charset can be decoded by a mapped view.
+   * @param charset the charset to verify.
+   * @return true if handled, false otherwise.
+   */
+  static boolean isHandled(Charset charset) {
+    return StandardCharsets.US_ASCII.equals(charset) ||
+        StandardCharsets.ISO_8859_1.equals(charset) || StandardCharsets.UTF_8.equals(charset);
+  }
+
+  /**
+   * Maps the given file into memory and gets a character view on it.
+   * @param file the file to map.
+   * @param charset the charset of the file content.
+   * @return the character view of the file content.
+   * @throws IOException on mapping error.
+   */
+  static MappedCharSequence map(Path file, Charset charset) throws IOException {
+    if (!isHandled(charset)) {
+      throw new IllegalArgumentException(charset + " content can not be mapped...");
+    }
+    ByteBuffer bytes;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > MAX_SIZE) {
+        throw new IOException(
+            file + " is too large to be mapped, use the stream content mode...");
+      }
+      // The mapping stays valid once the channel is closed
+      bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+    if (StandardCharsets.UTF_8.equals(charset)) {
+      Utf8 utf8 = new Utf8(bytes);
+      if (!utf8.isAsciiOnly()) {
+        return utf8;
+      }
+    }
+    return new SingleByte(bytes, 0, bytes.limit(), StandardCharsets.US_ASCII.equals(charset));
+  }
+
+  /**
+   * Gets the mapped bytes which are decoded by this view.
+   * @return a new buffer sharing the mapped bytes.
+   */
+  abstract ByteBuffer getBytes();
+
+  /**
+   * Releases the mapping of the file. Neither this view nor its sub-sequences must be accessed
+   * once released. When the mapping can not be released explicitly by the running JVM, it is
+   * released by the garbage collector.
+   */
+  abstract void release();
+
+  /**
+   * Unmaps a mapped buffer, if the running JVM permits it.
+   */
+  static void unmap(ByteBuffer bytes) {
+    if (UNMAPPER != null) {
+      try {
+        UNMAPPER.unmap(bytes);
+      } catch (ReflectiveOperationException | RuntimeException ignore) {
+        // The mapping will be released by the garbage collector
+      }
+    }
+  }
+
+  /**
+   * Looks up the way the running JVM releases a mapping: sun.misc.Unsafe#invokeCleaner from Java
+   * 9, the cleaner of sun.nio.ch.DirectBuffer before.
+   * @return the unmapper, null if none is accessible.
+   */
+  private static Unmapper lookupUnmapper() {
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      Object unsafe = theUnsafe.get(null);
+      return bytes -> invokeCleaner.invoke(unsafe, bytes);
+    } catch (ReflectiveOperationException | RuntimeException ignore) {
+      // Before Java 9
+    }
+    try {
+      Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+      Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+      return bytes -> {
+        Object bytesCleaner = cleaner.invoke(bytes);
+        if (bytesCleaner != null) {
+          clean.invoke(bytesCleaner);
+        }
+      };
+    } catch (ReflectiveOperationException | RuntimeException ignore) {
+      return null;
+    }
+  }
+
+  /**
+   * Releases a mapped buffer.
+   */
+  @FunctionalInterface
+  private interface Unmapper {
+    void unmap(ByteBuffer bytes) throws ReflectiveOperationException;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder(length()).append(this).toString();
+  }
+
+  /**
+   * One byte is one character.
+   */
+  private static class SingleByte extends MappedCharSequence {
+    private final ByteBuffer bytes;
+    private final int offset;
+    private final int length;
+    private final boolean asciiOnly;
+
+    private SingleByte(final ByteBuffer bytes, final int offset, final int length,
+        final boolean asciiOnly) {
+      this.bytes = bytes;
+      this.offset = offset;
+      this.length = length;
+      this.asciiOnly = asciiOnly;
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(final int index) {
+      if (index < 0 || index >= length) {
+        throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+      }
+      int b = bytes.get(offset + index) & 0xFF;
+      return (asciiOnly && b > 0x7F) ? REPLACEMENT_CHAR : (char) b;
+    }
+
+    @Override
+    ByteBuffer getBytes() {
+      ByteBuffer duplicate = bytes.duplicate();
+      duplicate.limit(offset + length).position(offset);
+      return duplicate;
+    }
+
+    @Override
+    void release() {
+      unmap(bytes);
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+      if (start < 0 || end > length || start > end) {
+        throw new IndexOutOfBoundsException("start " + start + ", end " + end);
+      }
+      return new SingleByte(bytes, offset + start, end - start, asciiOnly);
+    }
+  }
+
+  /**
+   * The content is cut into blocks of about {@link #BLOCK_SIZE} bytes, each one starting on a
+   * code point. The position of each block is indexed once when the view is created, then a
+   * block is decoded into a small cache when one of its characters is accessed. Two blocks are
+   * cached in order to not decode again and again when the regex engine steps back over a block
+   * boundary.
+   */
+  private static class Utf8 extends MappedCharSequence {
+    private static final int BLOCK_SIZE = 8192;
+
+    private final ByteBuffer bytes;
+    private final int length;
+    private final boolean asciiOnly;
+    private final int[] blockByteStarts;
+    private final int[] blockCharStarts;
+
+    private final char[][] cachedChars = new char[2][BLOCK_SIZE + 4];
+    private final int[] cachedBlocks = {-1, -1};
+    private final int[] cachedLengths = new int[2];
+    private int lastCacheSlot = 0;
+
+    private Utf8(final ByteBuffer bytes) {
+      this.bytes = bytes;
+      int nbBytes = bytes.limit();
+      int nbBlocks = (nbBytes / BLOCK_SIZE) + 1;
+      int[] byteStarts = new int[nbBlocks];
+      int[] charStarts = new int[nbBlocks];
+      int blockIndex = 0;
+      int nextBlockStart = 0;
+      int nbChars = 0;
+      boolean ascii = true;
+      int position = 0;
+      while (position < nbBytes) {
+        if (position >= nextBlockStart) {
+          if (blockIndex == byteStarts.length) {
+            byteStarts = Arrays.copyOf(byteStarts, blockIndex * 2);
+            charStarts = Arrays.copyOf(charStarts, blockIndex * 2);
+          }
+          byteStarts[blockIndex] = position;
+          charStarts[blockIndex] = nbChars;
+          blockIndex++;
+          nextBlockStart = position + BLOCK_SIZE;
+        }
+        int b = bytes.get(position) & 0xFF;
+        if (b < 0x80) {
+          nbChars++;
+          position++;
+        } else {
+          ascii = false;
+          long decoded = decode(position);
+          nbChars += Character.charCount((int) decoded);
+          position += (int) (decoded >>> 32);
+        }
+      }
+      this.length = nbChars;
+      this.asciiOnly = ascii;
+      this.blockByteStarts = Arrays.copyOf(byteStarts, blockIndex);
+      this.blockCharStarts = Arrays.copyOf(charStarts, blockIndex);
+    }
+
+    private boolean isAsciiOnly() {
+      return asciiOnly;
+    }
+
+    /**
+     * Decodes the code point starting at the given position.
+     * @return the number of bytes of the sequence in the high int, the code point in the low one.
+     */
+    private long decode(int position) {
+      int b0 = bytes.get(position) & 0xFF;
+      int nbContinuations;
+      int codePoint;
+      int min = 0x80;
+      int max = 0xBF;
+      if (b0 < 0x80) {
+        return (1L << 32) | b0;
+      } else if (b0 >= 0xC2 && b0 <= 0xDF) {
+        nbContinuations = 1;
+        codePoint = b0 & 0x1F;
+      } else if (b0 >= 0xE0 && b0 <= 0xEF) {
+        nbContinuations = 2;
+        codePoint = b0 & 0x0F;
+        min = b0 == 0xE0 ? 0xA0 : min;
+        max = b0 == 0xED ? 0x9F : max;
+      } else if (b0 >= 0xF0 && b0 <= 0xF4) {
+        nbContinuations = 3;
+        codePoint = b0 & 0x07;
+        min = b0 == 0xF0 ? 0x90 : min;
+        max = b0 == 0xF4 ? 0x8F : max;
+      } else {
+        return (1L << 32) | REPLACEMENT_CHAR;
+      }
+      if (position + nbContinuations >= bytes.limit()) {
+        return (1L << 32) | REPLACEMENT_CHAR;
+      }
+      for (int i = 1; i <= nbContinuations; i++) {
+        int b = bytes.get(position + i) & 0xFF;
+        if (b < min || b > max) {
+          return (1L << 32) | REPLACEMENT_CHAR;
+        }
+        codePoint = (codePoint << 6) | (b & 0x3F);
+        min = 0x80;
+        max = 0xBF;
+      }
+      return ((long) (nbContinuations + 1) << 32) | codePoint;
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(final int index) {
+      if (index < 0 || index >= length) {
+        throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+      }
+      for (int slot = 0; slot < 2; slot++) {
+        int block = cachedBlocks[slot];
+        if (block >= 0) {
+          int relativeIndex = index - blockCharStarts[block];
+          if (relativeIndex >= 0 && relativeIndex < cachedLengths[slot]) {
+            return cachedChars[slot][relativeIndex];
+          }
+        }
+      }
+      int block = Arrays.binarySearch(blockCharStarts, index);
+      if (block < 0) {
+        block = -block - 2;
+      }
+      int slot = 1 - lastCacheSlot;
+      decodeBlock(block, slot);
+      lastCacheSlot = slot;
+      return cachedChars[slot][index - blockCharStarts[block]];
+    }
+
+    private void decodeBlock(int block, int slot) {
+      int position = blockByteStarts[block];
+      int end = block + 1 < blockByteStarts.length ? blockByteStarts[block + 1] : bytes.limit();
+      char[] chars = cachedChars[slot];
+      int nbChars = 0;
+      while (position < end) {
+        int b = bytes.get(position) & 0xFF;
+        if (b < 0x80) {
+          chars[nbChars++] = (char) b;
+          position++;
+        } else {
+          long decoded = decode(position);
+          nbChars += Character.toChars((int) decoded, chars, nbChars);
+          position += (int) (decoded >>> 32);
+        }
+      }
+      cachedBlocks[slot] = block;
+      cachedLengths[slot] = nbChars;
+    }
+
+    @Override
+    ByteBuffer getBytes() {
+      return bytes.duplicate();
+    }
+
+    @Override
+    void release() {
+      unmap(bytes);
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+      if (start < 0 || end > length || start > end) {
+        throw new IndexOutOfBoundsException("start " + start + ", end " + end);
+      }
+      StringBuilder sb = new StringBuilder(end - start);
+      for (int i = start; i < end; i++) {
+        sb.append(charAt(i));
+      }
+      return sb.toString();
+    }
+  }
+}
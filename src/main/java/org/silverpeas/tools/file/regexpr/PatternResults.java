@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.file.regexpr;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Results of the verification of the patterns on a file content: for each pattern, whether it has
+ * been evaluated and, if so, whether it has been found into the content.
+ */
+class PatternResults {
+
+  private final boolean[] evaluated;
+  private final boolean[] found;
+
+  PatternResults(int nbPatterns) {
+    evaluated = new boolean[nbPatterns];
+    found = new boolean[nbPatterns];
+  }
+
+  /**
+   * Gets the results from the bit masks stored into an index.
+   * @param nbPatterns the number of patterns.
+   * @param evaluatedMask the bit mask of the evaluated patterns.
+   * @param foundMask the bit mask of the found patterns.
+   * @return the results.
+   */
+  static PatternResults fromMasks(int nbPatterns, long evaluatedMask, long foundMask) {
+    PatternResults results = new PatternResults(nbPatterns);
+    for (int i = 0; i < nbPatterns; i++) {
+      results.evaluated[i] = (evaluatedMask & (1L << i)) != 0;
+      results.found[i] = (foundMask & (1L << i)) != 0;
+    }
+    return results;
+  }
+
+  boolean isEvaluated(int patternIndex) {
+    return evaluated[patternIndex];
+  }
+
+  void set(int patternIndex, boolean patternFound) {
+    evaluated[patternIndex] = true;
+    found[patternIndex] = patternFound;
+  }
+
+  /**
+   * Gets the verdict on the file: it is not matched as soon as one of the evaluated patterns is
+   * not verified, it is matched when all the patterns have been evaluated and verified.
+   * @param patternConfigs the verified patterns.
+   * @return the verdict, null if it is not known yet.
+   */
+  Boolean getVerdict(List<RegExprMatcher.PatternConfig> patternConfigs) {
+    boolean allEvaluated = true;
+    for (int i = 0; i < evaluated.length; i++) {
+      if (!evaluated[i]) {
+        allEvaluated = false;
+      } else if (found[i] != patternConfigs.get(i).mustMatch) {
+        return Boolean.FALSE;
+      }
+    }
+    return allEvaluated ? Boolean.TRUE : null;
+  }
+
+  long getEvaluatedMask() {
+    return toMask(evaluated);
+  }
+
+  long getFoundMask() {
+    return toMask(found);
+  }
+
+  private static long toMask(boolean[] flags) {
+    long mask = 0;
+    for (int i = 0; i < flags.length && i < Long.SIZE; i++) {
+      mask |= flags[i] ? (1L << i) : 0;
+    }
+    return mask;
+  }
+
+  @Override
+  public String toString() {
+    return "evaluated=" + Arrays.toString(evaluated) + ", found=" + Arrays.toString(found);
+  }
+}
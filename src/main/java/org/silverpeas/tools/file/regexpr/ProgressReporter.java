@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.file.regexpr;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.time.DurationFormatUtils;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints periodically on the error output the progress of a search: the analysed files and the
+ * read bytes with their rates over the last period, the matched files, the matched files waiting
+ * to be written, the directories waiting to be walked and, when it is known, the estimated
+ * remaining duration.
+ */
+class ProgressReporter implements Closeable {
+
+  private final ScanMetrics metrics;
+  private final ScheduledExecutorService scheduler;
+  private long lastTime = System.nanoTime();
+  private long lastNbAnalysedFiles = 0;
+  private long lastNbReadBytes = 0;
+
+  /**
+   * Starts the reporting.
+   * @param metrics the counters of the search.
+   * @param period the period of the reporting in seconds.
+   * @return the started reporter.
+   */
+  static ProgressReporter start(ScanMetrics metrics, int period) {
+    return new ProgressReporter(metrics, period);
+  }
+
+  private ProgressReporter(final ScanMetrics metrics, final int period) {
+    this.metrics = metrics;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "regexpr-progress");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleAtFixedRate(this::report, period, period, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Reports the progress. An error is printed without stopping the next reports, which a
+   * periodic task throwing an exception would do.
+   */
+  private void report() {
+    try {
+      printProgress();
+    } catch (RuntimeException e) {
+      System.err.println("Can not report the progress: " + e);
+    }
+  }
+
+  private void printProgress() {
+    long time = System.nanoTime();
+    long nbAnalysedFiles = metrics.getNbAnalysedFiles();
+    long nbReadBytes = metrics.getNbReadBytes();
+    double seconds = Math.max(1, TimeUnit.NANOSECONDS.toMillis(time - lastTime)) / 1000d;
+    long eta = metrics.getEtaSeconds();
+    System.err.println(String.format(
+        "[progress] %d files (%.1f files/s), %s read (%.2f MB/s), %d matched, " +
+            "%d waiting for output, %d directories pending, ETA %s", nbAnalysedFiles,
+        (nbAnalysedFiles - lastNbAnalysedFiles) / seconds,
+        FileUtils.byteCountToDisplaySize(nbReadBytes),
+        (nbReadBytes - lastNbReadBytes) / seconds / FileUtils.ONE_MB,
+        metrics.getNbMatchedFiles(), metrics.getQueueDepth(), metrics.getNbPendingDirectories(),
+        eta >= 0 ? DurationFormatUtils.formatDuration(eta * 1000, "H:mm:ss") : "unknown"));
+    lastTime = time;
+    lastNbAnalysedFiles = nbAnalysedFiles;
+    lastNbReadBytes = nbReadBytes;
+  }
+
+  /**
+   * Stops the reporting.
+   */
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+  }
+}
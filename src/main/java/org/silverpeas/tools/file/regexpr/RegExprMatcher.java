@@ -23,32 +23,50 @@
  */
 package org.silverpeas.tools.file.regexpr;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.DirectoryFileFilter;
-import org.apache.commons.io.filefilter.FileFileFilter;
-import org.apache.commons.io.filefilter.NotFileFilter;
-import org.apache.commons.io.filefilter.RegexFileFilter;
+import org.silverpeas.tools.util.FileTreeWalker;
+import org.silverpeas.tools.util.NameFilter;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.io.File;
-import java.io.FileFilter;
-import java.util.ArrayDeque;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
  * @author Yohann Chastagnier
  */
-public class RegExprMatcher {
+public class RegExprMatcher implements FileTreeWalker.Visitor {
+
+  private static final String MBEAN_NAME = "org.silverpeas.tools:type=RegExprMatcher,id=";
+  // Numbers the searches of the JVM, each one registering its own MBean
+  private static final AtomicInteger MBEAN_IDS = new AtomicInteger();
 
   private File current = new File(".");
-  private List<File> files = new ArrayList<>();
+  private List<Path> files = new ArrayList<>();
   private Config config;
-  private long nbAnalysedFiles = 0;
-  private long nbMatchedFiles = 0;
+  private final LongAdder nbAnalysedFiles = new LongAdder();
+  private final LongAdder nbMatchedFiles = new LongAdder();
+  private final LongAdder nbReadBytes = new LongAdder();
+  private final LongAdder nbSkippedBytes = new LongAdder();
+  private final LongAdder nbPrefilteredFiles = new LongAdder();
+  private final LongAdder[] nbSkippedFiles = new LongAdder[SkipHeuristics.Reason.values().length];
+  private final LongAdder nbAvoidedBytes = new LongAdder();
+  private final LongAdder nbReusedVerdicts = new LongAdder();
+  private final LongAdder nbUnreadFiles = new LongAdder();
+  private ScanIndex index;
+  private ResultSink resultSink;
 
   public static RegExprMatcher execute(final Config config, final List<String> paths)
       throws Exception {
@@ -58,87 +76,432 @@ public class RegExprMatcher {
 
   private RegExprMatcher(final Config config, List<String> paths) {
     this.config = config;
+    for (int i = 0; i < nbSkippedFiles.length; i++) {
+      nbSkippedFiles[i] = new LongAdder();
+    }
     files.addAll(paths.stream().map(path -> {
       File currentPath = new File(path);
-      return currentPath.getPath().equals(currentPath.getAbsolutePath()) ? currentPath :
-          new File(current, path);
+      return (currentPath.getPath().equals(currentPath.getAbsolutePath()) ? currentPath :
+          new File(current, path)).toPath();
     }).collect(Collectors.toList()));
   }
 
   private RegExprMatcher execute() throws Exception {
-    for (File file : files) {
-      analyse(file);
+    config.verify();
+    // The pending pattern and the prefilter are set up before any scanning thread uses them
+    config.getPatternConfigs();
+    config.getPrefilter();
+    resultSink = ResultSink.open(config.getOutputFile(), config.getOutputFormat());
+    try {
+      if (config.getIndexFile() != null) {
+        index = ScanIndex.open(config.getIndexFile(), config.getContentSignature(),
+            config.getPatternConfigs().stream().map(PatternConfig::getKey)
+                .collect(Collectors.toList()), files);
+      }
+      FileTreeWalker walker = new FileTreeWalker(this, config.getNbThreads());
+      ScanMetrics metrics = new ScanMetrics(nbAnalysedFiles, nbMatchedFiles, nbReadBytes,
+          resultSink::getQueueDepth, walker::getNbPendingDirectories,
+          index != null ? index.getNbPreviousEntries() : 0);
+      ObjectName mbeanName = config.isJmxEnabled() ? registerMBean(metrics) : null;
+      ProgressReporter reporter =
+          config.getProgressPeriod() > 0 ? ProgressReporter.start(metrics,
+              config.getProgressPeriod()) : null;
+      try {
+        walker.walk(files);
+        if (index != null) {
+          index.complete();
+        }
+      } finally {
+        if (reporter != null) {
+          reporter.close();
+        }
+        if (mbeanName != null) {
+          ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+        }
+        if (index != null) {
+          index.close();
+        }
+      }
+    } finally {
+      resultSink.close();
+    }
+    System.out.println("Just analyzing " + nbAnalysedFiles.sum() + " files.");
+    System.out.println(nbMatchedFiles.sum() + " of them matched.");
+    long nbSkipped = Arrays.stream(nbSkippedFiles).mapToLong(LongAdder::sum).sum();
+    if (nbSkipped > 0) {
+      StringBuilder skipped = new StringBuilder().append(nbSkipped).append(" files skipped (");
+      for (SkipHeuristics.Reason reason : SkipHeuristics.Reason.values()) {
+        skipped.append(reason.ordinal() > 0 ? ", " : "").append(reason.getLabel()).append(": ")
+            .append(nbSkippedFiles[reason.ordinal()].sum());
+      }
+      System.out.println(skipped.append("), ").append(nbAvoidedBytes.sum())
+          .append(" bytes not decoded."));
+    }
+    long nbAnalysed = nbAnalysedFiles.sum();
+    System.out.println(nbReadBytes.sum() + " bytes read (" +
+        (nbAnalysed > 0 ? nbReadBytes.sum() / nbAnalysed : 0) + " per analysed file).");
+    if (config.getContentMode() == ContentMode.STREAM) {
+      System.out.println(nbSkippedBytes.sum() + " bytes skipped once the verdict was known.");
+    } else if (config.getPrefilter() != null) {
+      System.out.println(
+          nbPrefilteredFiles.sum() + " files rejected by the literal prefilter.");
+    }
+    if (index != null) {
+      System.out.println(nbReusedVerdicts.sum() + " verdicts reused from the index (" +
+          nbUnreadFiles.sum() + " files not read).");
     }
-    System.out.println("Just analyzing " + nbAnalysedFiles + " files.");
-    System.out.println(nbMatchedFiles + " of them matched.");
     return this;
   }
 
-  private void analyse(File startFile) throws Exception {
-    Queue<File> fileQueue = new ArrayDeque<>(100000);
-    fileQueue.add(startFile);
-    while (!fileQueue.isEmpty()) {
-      File file = fileQueue.poll();
-      if (file.isFile()) {
-        if (config.getFileFilter().accept(file)) {
-          boolean fileMatched = false;
-          for (PatternConfig patternConfig : config.getPatternConfigs()) {
-            boolean found = patternConfig.pattern.matcher(FileUtils.readFileToString(file)).find();
-            fileMatched =
-                (found && patternConfig.mustMatch) || (!found && !patternConfig.mustMatch);
-            if (!fileMatched) {
-              break;
+  private ObjectName registerMBean(ScanMetrics metrics) throws JMException {
+    ObjectName mbeanName = new ObjectName(MBEAN_NAME + MBEAN_IDS.incrementAndGet());
+    ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, mbeanName);
+    return mbeanName;
+  }
+
+  @Override
+  public boolean visitDirectory(final Path dir, final BasicFileAttributes attrs) {
+    return config.getDirFilter().accept(dir);
+  }
+
+  @Override
+  public void visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+    analyseFile(file, attrs);
+  }
+
+  private void analyseFile(Path file, BasicFileAttributes attrs) throws IOException {
+    if (config.getFileFilter().accept(file)) {
+      SkipHeuristics.Reason skipReason = config.getSkipHeuristics().verify(file, attrs);
+      if (skipReason != null) {
+        nbSkippedFiles[skipReason.ordinal()].increment();
+        nbAvoidedBytes.add(attrs.size());
+        return;
+      }
+      List<PatternConfig> patternConfigs = config.getPatternConfigs();
+      boolean fileMatched = false;
+      if (!patternConfigs.isEmpty()) {
+        String indexKey = index != null ? file.toAbsolutePath().normalize().toString() : null;
+        ScanIndex.Entry indexed = index != null ? index.get(indexKey) : null;
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        PatternResults results = null;
+        if (indexed != null && indexed.size == attrs.size() &&
+            indexed.lastModified == lastModified) {
+          results = PatternResults.fromMasks(patternConfigs.size(), indexed.evaluatedMask,
+              indexed.foundMask);
+        }
+        Boolean verdict = results != null ? results.getVerdict(patternConfigs) : null;
+        boolean hashed = indexed != null && indexed.hashed;
+        long hash = indexed != null ? indexed.hash : 0;
+        long fileReadBytes = 0;
+        if (verdict != null) {
+          // The file has not changed since the previous search, it is not read at all
+          nbReusedVerdicts.increment();
+          nbUnreadFiles.increment();
+        } else if (config.getContentMode() == ContentMode.STREAM ||
+            attrs.size() > MappedCharSequence.MAX_SIZE) {
+          // A file too large to be mapped or loaded into a String is streamed
+          ChunkedVerifier verifier = ChunkedVerifier.verify(file, attrs, config);
+          results = verifier.getResults();
+          verdict = verifier.isMatched();
+          hashed = false;
+          fileReadBytes = verifier.getNbReadBytes();
+          nbSkippedBytes.add(verifier.getNbSkippedBytes());
+        } else {
+          FileContent content = FileContent.load(file, attrs, config, index != null);
+          try {
+            if (results == null && hashed && indexed.hash == content.getHash()) {
+              // Only the date of the file has changed
+              results = PatternResults.fromMasks(patternConfigs.size(), indexed.evaluatedMask,
+                  indexed.foundMask);
+            } else if (results == null) {
+              results = new PatternResults(patternConfigs.size());
             }
+            hashed = index != null;
+            hash = content.getHash();
+            verdict = results.getVerdict(patternConfigs);
+            if (verdict != null) {
+              nbReusedVerdicts.increment();
+            } else {
+              verifyContent(content, patternConfigs, results);
+              verdict = results.getVerdict(patternConfigs);
+            }
+            fileReadBytes = content.getNbReadBytes();
+          } finally {
+            content.release();
           }
-          if (fileMatched) {
-            System.out.println(file.getPath());
-            nbMatchedFiles++;
-          }
-          nbAnalysedFiles++;
         }
-      } else if (file.isDirectory() && config.getDirFilter().accept(file)) {
-        for (File subFile : file.listFiles()) {
-          fileQueue.add(subFile);
+        fileMatched = Boolean.TRUE.equals(verdict);
+        if (index != null) {
+          index.put(indexKey,
+              new ScanIndex.Entry(attrs.size(), lastModified, hashed, hash,
+                  results.getEvaluatedMask(), results.getFoundMask()));
+        }
+        nbReadBytes.add(fileReadBytes);
+        if (config.isReadBytesShown()) {
+          resultSink.message(file + " -> " + fileReadBytes + " bytes read");
         }
-      } else {
-        int i = 0;
       }
+      if (fileMatched) {
+        resultSink.accept(file);
+        nbMatchedFiles.increment();
+      }
+      nbAnalysedFiles.increment();
     }
   }
 
+  /**
+   * Evaluates on the content the patterns which results are not known yet, stopping at the first
+   * one which is not verified.
+   */
+  private void verifyContent(FileContent content, List<PatternConfig> patternConfigs,
+      PatternResults results) {
+    LiteralPrefilter prefilter = config.getPrefilter();
+    boolean[] candidates = prefilter != null ? prefilter.verify(content.getChars()) : null;
+    if (candidates != null && !mayMatch(patternConfigs, candidates)) {
+      nbPrefilteredFiles.increment();
+      for (int i = 0; i < patternConfigs.size(); i++) {
+        if (!candidates[i]) {
+          results.set(i, false);
+        }
+      }
+      return;
+    }
+    for (int i = 0; i < patternConfigs.size(); i++) {
+      if (!results.isEvaluated(i)) {
+        PatternConfig patternConfig = patternConfigs.get(i);
+        boolean found = (candidates == null || candidates[i]) &&
+            patternConfig.pattern.matcher(content.getChars()).find();
+        results.set(i, found);
+        if (found != patternConfig.mustMatch) {
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Indicates if the patterns could be verified according to the result of the prefilter: a
+   * pattern that must match but which literal has not been found can not be verified.
+   */
+  private boolean mayMatch(List<PatternConfig> patternConfigs, boolean[] candidates) {
+    for (int i = 0; i < patternConfigs.size(); i++) {
+      if (patternConfigs.get(i).mustMatch && !candidates[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The ways the content of a file is provided to the patterns.
+   */
+  public enum ContentMode {
+    /**
+     * The whole content is decoded into a String.
+     */
+    STRING,
+    /**
+     * The file is mapped into memory and decoded on the fly, nothing is copied onto the heap.
+     */
+    MAPPED,
+    /**
+     * The file is read chunk by chunk and the reading stops as soon as the verdict is known.
+     */
+    STREAM
+  }
+
   public static class Config {
     private List<PatternConfig> patterns = new ArrayList<>();
     private StringBuilder currentPattern = new StringBuilder();
 
-    private FileFilter fileFilter = FileFileFilter.FILE;
-    private FileFilter dirFilter = DirectoryFileFilter.DIRECTORY;
+    private NameFilter fileFilter = NameFilter.ALL;
+    private NameFilter dirFilter = NameFilter.ALL;
+    private int nbThreads = 1;
+    private boolean readBytesShown = false;
+    private ContentMode contentMode = ContentMode.STRING;
+    private Charset charset = Charset.defaultCharset();
+    private int chunkSize = 65536;
+    private int overlapSize = 1024;
+    private boolean prefilterEnabled = true;
+    private LiteralPrefilter prefilter;
+    private final SkipHeuristics skipHeuristics = new SkipHeuristics();
+    private Path indexFile;
+    private Path outputFile;
+    private ResultSink.Format outputFormat = ResultSink.Format.PLAIN;
+    private int progressPeriod = 0;
+    private boolean jmxEnabled = false;
 
     public List<PatternConfig> getPatternConfigs() {
       registerPattern();
       return patterns;
     }
 
-    public FileFilter getFileFilter() {
+    public NameFilter getFileFilter() {
       return fileFilter;
     }
 
-    public FileFilter getDirFilter() {
+    public NameFilter getDirFilter() {
       return dirFilter;
     }
 
+    public int getNbThreads() {
+      return nbThreads;
+    }
+
+    public boolean isReadBytesShown() {
+      return readBytesShown;
+    }
+
+    public ContentMode getContentMode() {
+      return contentMode;
+    }
+
+    public Charset getCharset() {
+      return charset;
+    }
+
+    public int getChunkSize() {
+      return chunkSize;
+    }
+
+    public int getOverlapSize() {
+      return overlapSize;
+    }
+
+    public Path getIndexFile() {
+      return indexFile;
+    }
+
+    public Path getOutputFile() {
+      return outputFile;
+    }
+
+    ResultSink.Format getOutputFormat() {
+      return outputFormat;
+    }
+
+    public int getProgressPeriod() {
+      return progressPeriod;
+    }
+
+    public boolean isJmxEnabled() {
+      return jmxEnabled;
+    }
+
+    /**
+     * Gets the settings the results of the patterns depend on, apart from the patterns
+     * themselves.
+     */
+    String getContentSignature() {
+      String signature = charset.name() + "/" + contentMode;
+      if (contentMode == ContentMode.STREAM) {
+        signature += "/" + chunkSize + "/" + overlapSize;
+      }
+      return signature;
+    }
+
+    SkipHeuristics getSkipHeuristics() {
+      return skipHeuristics;
+    }
+
+    /**
+     * Gets the literal prefilter of the patterns.
+     * @return the prefilter, null if it is disabled or if no literal can be extracted from the
+     * patterns.
+     */
+    synchronized LiteralPrefilter getPrefilter() {
+      if (prefilterEnabled && prefilter == null) {
+        LiteralPrefilter literalPrefilter = new LiteralPrefilter(getPatternConfigs());
+        prefilterEnabled = literalPrefilter.isUseful();
+        prefilter = prefilterEnabled ? literalPrefilter : null;
+      }
+      return prefilter;
+    }
+
+    /**
+     * Verifies the consistency of the directives, once all of them are set.
+     * @throws IllegalArgumentException if the directives can not be applied together.
+     */
+    void verify() {
+      if (contentMode == ContentMode.MAPPED && !MappedCharSequence.isHandled(charset)) {
+        throw new IllegalArgumentException(
+            "{-content} with [mapped]: " + charset + " can not be mapped...");
+      }
+    }
+
     public Config set(String directive, String value) {
       switch (directive) {
         case "-fileFilter":
-          fileFilter = new RegexFileFilter(value);
+          fileFilter = NameFilter.matching(value);
           break;
         case "-dirFilter":
-          dirFilter = new RegexFileFilter(value);
+          dirFilter = NameFilter.matching(value);
           break;
         case "-!fileFilter":
-          fileFilter = new NotFileFilter(new RegexFileFilter(value));
+          fileFilter = NameFilter.notMatching(value);
           break;
         case "-!dirFilter":
-          dirFilter = new NotFileFilter(new RegexFileFilter(value));
+          dirFilter = NameFilter.notMatching(value);
+          break;
+        case "-threads":
+          nbThreads = Integer.parseInt(value);
+          if (nbThreads < 1) {
+            throw new IllegalArgumentException("{" + directive + "} must be a positive number...");
+          }
+          break;
+        case "-showReadBytes":
+          readBytesShown = Boolean.parseBoolean(value);
+          break;
+        case "-content":
+          contentMode = ContentMode.valueOf(value.toUpperCase());
+          break;
+        case "-charset":
+          charset = Charset.forName(value);
+          break;
+        case "-chunkSize":
+          chunkSize = Integer.parseInt(value);
+          if (chunkSize < 1) {
+            throw new IllegalArgumentException("{" + directive + "} must be a positive number...");
+          }
+          break;
+        case "-maxSize":
+          skipHeuristics.setMaxSize(Long.parseLong(value));
+          break;
+        case "-binarySniff":
+          skipHeuristics.setBinarySniffed(Boolean.parseBoolean(value));
+          break;
+        case "-extensions":
+          skipHeuristics.setAllowedExtensions(value);
+          break;
+        case "-!extensions":
+          skipHeuristics.setDeniedExtensions(value);
+          break;
+        case "-index":
+          indexFile = Paths.get(value);
+          break;
+        case "-output":
+          outputFile = Paths.get(value);
+          break;
+        case "-outputFormat":
+          outputFormat = ResultSink.Format.valueOf(value.toUpperCase());
+          break;
+        case "-progress":
+          progressPeriod = Integer.parseInt(value);
+          if (progressPeriod < 0) {
+            throw new IllegalArgumentException("{" + directive + "} must not be negative...");
+          }
+          break;
+        case "-jmx":
+          jmxEnabled = Boolean.parseBoolean(value);
+          break;
+        case "-prefilter":
+          prefilterEnabled = Boolean.parseBoolean(value);
+          break;
+        case "-overlap":
+          overlapSize = Integer.parseInt(value);
+          if (overlapSize < 0) {
+            throw new IllegalArgumentException("{" + directive + "} must not be negative...");
+          }
           break;
         // Errors
         default:
@@ -175,13 +538,20 @@ public class RegExprMatcher {
     }
   }
 
-  private static class PatternConfig {
-    private final Pattern pattern;
-    private final boolean mustMatch;
+  static class PatternConfig {
+    final Pattern pattern;
+    final boolean mustMatch;
 
     private PatternConfig(final String pattern, final boolean mustMatch) {
       this.pattern = Pattern.compile(pattern);
       this.mustMatch = mustMatch;
     }
+
+    /**
+     * Gets the key identifying the pattern and its way to be verified.
+     */
+    String getKey() {
+      return (mustMatch ? "" : "!") + pattern.pattern();
+    }
   }
 }
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.file.regexpr;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Output of the matched files. The scanning threads only put the matched files into a bounded
+ * queue, which is drained by a dedicated writer thread into a buffered file or into the standard
+ * output, so the scanning is never waiting for the console. The writer is flushed each time the
+ * queue is empty.
+ * <p>
+ * The messages of the scanning threads intended for the console (the read bytes of each file for
+ * example) are queued with the matched files and written by the same thread into the standard
+ * output, so they are never interleaved with the matched files written into it.
+ */
+class ResultSink implements Closeable {
+
+  private static final int QUEUE_CAPACITY = 8192;
+  private static final int BATCH_SIZE = 1024;
+  private static final Object END = new Object();
+
+  /**
+   * The formats of the output.
+   */
+  enum Format {
+    /**
+     * One path per line.
+     */
+    PLAIN,
+    /**
+     * One JSON object per line, with the path into the "path" field.
+     */
+    JSONL,
+    /**
+     * The paths separated by a NUL character, as expected by xargs -0.
+     */
+    NUL
+  }
+
+  private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final Writer writer;
+  private final Writer console;
+  private final boolean closeOutput;
+  private final Format format;
+  private final Thread writerThread;
+  private volatile IOException error = null;
+
+  /**
+   * Opens the sink into the given file, or into the standard output if no file is given.
+   * @param outputFile the file to write, null for the standard output.
+   * @param format the format of the output.
+   * @return the opened sink.
+   * @throws IOException on error.
+   */
+  static ResultSink open(Path outputFile, Format format) throws IOException {
+    if (outputFile == null) {
+      return new ResultSink(System.out, false, format);
+    }
+    return new ResultSink(Files.newOutputStream(outputFile), true, format);
+  }
+
+  private ResultSink(final OutputStream output, final boolean closeOutput, final Format format) {
+    Charset charset = format == Format.JSONL ? StandardCharsets.UTF_8 : Charset.defaultCharset();
+    this.writer = new BufferedWriter(new OutputStreamWriter(output, charset), 65536);
+    this.console = closeOutput ? new BufferedWriter(new OutputStreamWriter(System.out)) : writer;
+    this.closeOutput = closeOutput;
+    this.format = format;
+    this.writerThread = new Thread(this::drain, "regexpr-result-sink");
+    this.writerThread.setDaemon(true);
+    this.writerThread.start();
+  }
+
+  /**
+   * Puts a matched file into the output queue. The caller waits only if the queue is full.
+   * @param file the matched file.
+   * @throws IOException if the writing of the output has failed.
+   */
+  void accept(Path file) throws IOException {
+    enqueue(file.toString());
+  }
+
+  /**
+   * Puts a message into the output queue, to be written as a line into the standard output.
+   * @param text the text of the message.
+   * @throws IOException if the writing of the output has failed.
+   */
+  void message(String text) throws IOException {
+    enqueue(new Message(text));
+  }
+
+  private void enqueue(Object item) throws IOException {
+    try {
+      // The error is checked while waiting so the scanning threads never wait for a dead writer
+      while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+        if (error != null) {
+          throw error;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while queuing " + item, e);
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * Gets the number of matched files waiting to be written.
+   * @return a number of files.
+   */
+  int getQueueDepth() {
+    return queue.size();
+  }
+
+  private void drain() {
+    List<Object> batch = new ArrayList<>(BATCH_SIZE);
+    try {
+      while (true) {
+        if (queue.isEmpty()) {
+          flush();
+        }
+        batch.add(queue.take());
+        queue.drainTo(batch, BATCH_SIZE - 1);
+        for (Object item : batch) {
+          if (item == END) {
+            flush();
+            return;
+          }
+          if (item instanceof Message) {
+            console.write(((Message) item).text);
+            console.write(System.lineSeparator());
+          } else {
+            write((String) item);
+          }
+        }
+        batch.clear();
+      }
+    } catch (IOException e) {
+      error = e;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void flush() throws IOException {
+    writer.flush();
+    if (console != writer) {
+      console.flush();
+    }
+  }
+
+  private void write(String path) throws IOException {
+    switch (format) {
+      case JSONL:
+        writer.write("{\"path\":\"");
+        writeJsonEscaped(path);
+        writer.write("\"}\n");
+        break;
+      case NUL:
+        writer.write(path);
+        writer.write('\0');
+        break;
+      default:
+        writer.write(path);
+        writer.write(System.lineSeparator());
+    }
+  }
+
+  private void writeJsonEscaped(String value) throws IOException {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        writer.write('\\');
+        writer.write(c);
+      } else if (c < 0x20) {
+        writer.write(String.format("\\u%04x", (int) c));
+      } else {
+        writer.write(c);
+      }
+    }
+  }
+
+  /**
+   * Writes the files still in the queue and releases the output.
+   * @throws IOException if the writing of the output has failed.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      enqueue(END);
+      writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException ignore) {
+      // The error of the writer is thrown below, after the release of the output
+    }
+    if (closeOutput) {
+      writer.close();
+      console.flush();
+    } else {
+      writer.flush();
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * A message for the console.
+   */
+  private static class Message {
+    private final String text;
+
+    private Message(final String text) {
+      this.text = text;
+    }
+
+    @Override
+    public String toString() {
+      return text;
+    }
+  }
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.file.regexpr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent index of a search, recording for each analysed file its size, its last modified
+ * date, a hash of its content and the results of the patterns. A next search with the same index
+ * reuses the results of the files which have not changed, so only the modified files are read
+ * again.
+ * <p>
+ * The results are recorded per pattern: when conditions are added, removed or deactivated between
+ * two searches, the results of the conditions still there are reused and only the new ones are
+ * evaluated. The index is discarded when the charset or the content mode changes, and it is
+ * considered as empty when it is truncated.
+ * <p>
+ * The entries of the previous search are loaded into memory at the opening, into primitive arrays
+ * where the paths are split into a shared directory and a file name, whereas the entries of the
+ * current search are written on the fly into a temporary file. Once the walk is completed, the
+ * previous entries outside the walked paths are copied into the temporary file, which then replaces
+ * the index. So only the files no more walked under the walked paths are purged from the index,
+ * and an interrupted search leaves the index as it was.
+ */
+class ScanIndex implements Closeable {
+
+  static final int MAX_PATTERNS = Long.SIZE;
+  private static final int MAGIC = 0x53504958;
+  private static final int VERSION = 1;
+
+  /**
+   * The indexed data of a file.
+   */
+  static class Entry {
+    final long size;
+    final long lastModified;
+    final boolean hashed;
+    final long hash;
+    final long evaluatedMask;
+    final long foundMask;
+
+    Entry(final long size, final long lastModified, final boolean hashed, final long hash,
+        final long evaluatedMask, final long foundMask) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.hashed = hashed;
+      this.hash = hash;
+      this.evaluatedMask = evaluatedMask;
+      this.foundMask = foundMask;
+    }
+  }
+
+  private final Path indexFile;
+  private final Path newIndexFile;
+  private final List<String> roots;
+  private final EntryTable previousEntries = new EntryTable();
+  private final DataOutputStream output;
+  private int nbPreviousEntriesInRoots;
+  private boolean completed;
+  private boolean closed;
+
+  /**
+   * Opens the index file, creating it if it does not exist.
+   * @param indexFile the index file.
+   * @param contentSignature the settings which results depend on (charset, content mode...).
+   * @param patternKeys the keys of the patterns of the search.
+   * @param roots the absolute and normalized paths walked by the search.
+   * @return the opened index.
+   * @throws IOException on error.
+   */
+  static ScanIndex open(Path indexFile, String contentSignature, List<String> patternKeys,
+      List<Path> roots) throws IOException {
+    if (patternKeys.size() > MAX_PATTERNS) {
+      throw new IllegalArgumentException(
+          "the index can not handle more than " + MAX_PATTERNS + " conditions...");
+    }
+    return new ScanIndex(indexFile, contentSignature, patternKeys, roots);
+  }
+
+  private ScanIndex(final Path indexFile, final String contentSignature,
+      final List<String> patternKeys, final List<Path> roots) throws IOException {
+    this.indexFile = indexFile;
+    this.newIndexFile = indexFile.resolveSibling(indexFile.getFileName() + ".new");
+    this.roots = new ArrayList<>(roots.size());
+    for (Path root : roots) {
+      this.roots.add(root.toAbsolutePath().normalize().toString());
+    }
+    if (Files.isRegularFile(indexFile)) {
+      try {
+        load(contentSignature, patternKeys);
+      } catch (EOFException e) {
+        // A truncated index is ignored, all the files are analysed again
+        previousEntries.clear();
+      }
+      for (int i = 0; i < previousEntries.size(); i++) {
+        if (isInRoots(previousEntries.getPath(i))) {
+          nbPreviousEntriesInRoots++;
+        }
+      }
+    }
+    output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(newIndexFile)));
+    output.writeInt(MAGIC);
+    output.writeInt(VERSION);
+    output.writeUTF(contentSignature);
+    output.writeInt(patternKeys.size());
+    for (String patternKey : patternKeys) {
+      output.writeUTF(patternKey);
+    }
+  }
+
+  private void load(String contentSignature, List<String> patternKeys) throws IOException {
+    try (DataInputStream input = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(indexFile)))) {
+      if (input.readInt() != MAGIC || input.readInt() != VERSION ||
+          !input.readUTF().equals(contentSignature)) {
+        return;
+      }
+      // The position of the previous patterns into the current ones
+      int[] patternIndexes = new int[input.readInt()];
+      for (int i = 0; i < patternIndexes.length; i++) {
+        patternIndexes[i] = patternKeys.indexOf(input.readUTF());
+      }
+      while (true) {
+        String path;
+        try {
+          path = input.readUTF();
+        } catch (EOFException e) {
+          break;
+        }
+        long size = input.readLong();
+        long lastModified = input.readLong();
+        boolean hashed = input.readBoolean();
+        long hash = input.readLong();
+        long evaluatedMask = remap(input.readLong(), patternIndexes);
+        long foundMask = remap(input.readLong(), patternIndexes);
+        previousEntries.put(path,
+            new Entry(size, lastModified, hashed, hash, evaluatedMask, foundMask));
+      }
+    }
+  }
+
+  private static long remap(long mask, int[] patternIndexes) {
+    long remapped = 0;
+    for (int i = 0; i < patternIndexes.length; i++) {
+      if (patternIndexes[i] >= 0 && (mask & (1L << i)) != 0) {
+        remapped |= 1L << patternIndexes[i];
+      }
+    }
+    return remapped;
+  }
+
+  private boolean isInRoots(String path) {
+    for (String root : roots) {
+      if (path.startsWith(root) && (path.length() == root.length() ||
+          root.endsWith(File.separator) || path.charAt(root.length()) == File.separatorChar)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the entry of a file recorded by the previous search.
+   * @param path the absolute path of the file.
+   * @return the entry, null if none.
+   */
+  Entry get(String path) {
+    int index = previousEntries.indexOf(path);
+    return index >= 0 ? previousEntries.getEntry(index) : null;
+  }
+
+  /**
+   * Gets the number of files under the walked paths recorded by the previous search.
+   * @return a number of files.
+   */
+  int getNbPreviousEntries() {
+    return nbPreviousEntriesInRoots;
+  }
+
+  /**
+   * Records the entry of a file for the next search.
+   * @param path the absolute path of the file.
+   * @param entry the entry.
+   * @throws IOException on writing error.
+   */
+  synchronized void put(String path, Entry entry) throws IOException {
+    output.writeUTF(path);
+    output.writeLong(entry.size);
+    output.writeLong(entry.lastModified);
+    output.writeBoolean(entry.hashed);
+    output.writeLong(entry.hash);
+    output.writeLong(entry.evaluatedMask);
+    output.writeLong(entry.foundMask);
+  }
+
+  /**
+   * Indicates that the walk is completed: the previous entries outside the walked paths are kept
+   * and the index file is replaced by the entries recorded during the current search.
+   * @throws IOException on error.
+   */
+  synchronized void complete() throws IOException {
+    for (int i = 0; i < previousEntries.size(); i++) {
+      String path = previousEntries.getPath(i);
+      if (!isInRoots(path)) {
+        put(path, previousEntries.getEntry(i));
+      }
+    }
+    output.close();
+    closed = true;
+    Files.move(newIndexFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+    completed = true;
+  }
+
+  /**
+   * Closes the index. If the walk has not been completed, the index file is left unchanged.
+   * @throws IOException on error.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      output.close();
+    }
+    if (!completed) {
+      Files.deleteIfExists(newIndexFile);
+    }
+  }
+
+  /**
+   * Entries stored into primitive arrays, indexed by an open addressing hash table. The directory
+   * of the paths is shared by all its files, and the file names are encoded in UTF-8 one after the
+   * other into a single byte array.
+   */
+  private static class EntryTable {
+    private static final int NB_VALUES = 5;
+
+    private final Map<String, Integer> directoryIds = new HashMap<>();
+    private final List<String> directories = new ArrayList<>();
+    private int size;
+    private int[] directoryOfEntries = new int[16];
+    private int[] nameOffsets = new int[17];
+    private byte[] names = new byte[256];
+    private long[] values = new long[16 * NB_VALUES];
+    private final BitSet hashed = new BitSet();
+    private int[] slots = newSlots(32);
+
+    private static int[] newSlots(int length) {
+      int[] newSlots = new int[length];
+      Arrays.fill(newSlots, -1);
+      return newSlots;
+    }
+
+    int size() {
+      return size;
+    }
+
+    void clear() {
+      directoryIds.clear();
+      directories.clear();
+      size = 0;
+      hashed.clear();
+      slots = newSlots(32);
+    }
+
+    void put(String path, Entry entry) {
+      int separator = path.lastIndexOf(File.separatorChar);
+      String directory = path.substring(0, separator + 1);
+      byte[] name = path.substring(separator + 1).getBytes(StandardCharsets.UTF_8);
+      Integer directoryId = directoryIds.get(directory);
+      if (directoryId == null) {
+        directoryId = directories.size();
+        directoryIds.put(directory, directoryId);
+        directories.add(directory);
+      } else if (indexOf(directoryId, name) >= 0) {
+        return;
+      }
+      if (size == directoryOfEntries.length) {
+        directoryOfEntries = Arrays.copyOf(directoryOfEntries, size * 2);
+        nameOffsets = Arrays.copyOf(nameOffsets, size * 2 + 1);
+        values = Arrays.copyOf(values, size * 2 * NB_VALUES);
+      }
+      int offset = nameOffsets[size];
+      if (offset + name.length > names.length) {
+        names = Arrays.copyOf(names, Math.max(names.length * 2, offset + name.length));
+      }
+      System.arraycopy(name, 0, names, offset, name.length);
+      directoryOfEntries[size] = directoryId;
+      nameOffsets[size + 1] = offset + name.length;
+      int valueOffset = size * NB_VALUES;
+      values[valueOffset] = entry.size;
+      values[valueOffset + 1] = entry.lastModified;
+      values[valueOffset + 2] = entry.hash;
+      values[valueOffset + 3] = entry.evaluatedMask;
+      values[valueOffset + 4] = entry.foundMask;
+      hashed.set(size, entry.hashed);
+      size++;
+      if (size * 2 > slots.length) {
+        slots = newSlots(slots.length * 2);
+        for (int i = 0; i < size - 1; i++) {
+          insert(i);
+        }
+      }
+      insert(size - 1);
+    }
+
+    int indexOf(String path) {
+      int separator = path.lastIndexOf(File.separatorChar);
+      Integer directoryId = directoryIds.get(path.substring(0, separator + 1));
+      return directoryId != null ?
+          indexOf(directoryId, path.substring(separator + 1).getBytes(StandardCharsets.UTF_8)) :
+          -1;
+    }
+
+    String getPath(int index) {
+      return directories.get(directoryOfEntries[index]) +
+          new String(names, nameOffsets[index], nameOffsets[index + 1] - nameOffsets[index],
+              StandardCharsets.UTF_8);
+    }
+
+    Entry getEntry(int index) {
+      int valueOffset = index * NB_VALUES;
+      return new Entry(values[valueOffset], values[valueOffset + 1], hashed.get(index),
+          values[valueOffset + 2], values[valueOffset + 3], values[valueOffset + 4]);
+    }
+
+    private int indexOf(int directoryId, byte[] name) {
+      int mask = slots.length - 1;
+      for (int slot = hash(directoryId, name, 0, name.length) & mask; slots[slot] >= 0;
+           slot = (slot + 1) & mask) {
+        int index = slots[slot];
+        int offset = nameOffsets[index];
+        if (directoryOfEntries[index] == directoryId &&
+            nameOffsets[index + 1] - offset == name.length && equals(name, names, offset)) {
+          return index;
+        }
+      }
+      return -1;
+    }
+
+    private void insert(int index) {
+      int mask = slots.length - 1;
+      int slot = hash(directoryOfEntries[index], names, nameOffsets[index],
+          nameOffsets[index + 1]) & mask;
+      while (slots[slot] >= 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = index;
+    }
+
+    private static int hash(int directoryId, byte[] bytes, int from, int to) {
+      int hash = directoryId;
+      for (int i = from; i < to; i++) {
+        hash = 31 * hash + bytes[i];
+      }
+      return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(byte[] name, byte[] bytes, int offset) {
+      for (int i = 0; i < name.length; i++) {
+        if (name[i] != bytes[offset + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.file.regexpr;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * The counters of a running search, read by the progress reporter and by JMX. The rates are the
+ * average ones since the start of the search.
+ */
+public class ScanMetrics implements ScanMetricsMBean {
+
+  private final long startTime = System.nanoTime();
+  private final LongAdder nbAnalysedFiles;
+  private final LongAdder nbMatchedFiles;
+  private final LongAdder nbReadBytes;
+  private final IntSupplier queueDepth;
+  private final IntSupplier nbPendingDirectories;
+  private final long nbExpectedFiles;
+
+  /**
+   * Default constructor.
+   * @param nbAnalysedFiles the counter of analysed files.
+   * @param nbMatchedFiles the counter of matched files.
+   * @param nbReadBytes the counter of read bytes.
+   * @param queueDepth the number of matched files waiting to be written.
+   * @param nbPendingDirectories the number of directories waiting to be walked.
+   * @param nbExpectedFiles the number of files expected to be analysed, 0 if unknown.
+   */
+  ScanMetrics(final LongAdder nbAnalysedFiles, final LongAdder nbMatchedFiles,
+      final LongAdder nbReadBytes, final IntSupplier queueDepth,
+      final IntSupplier nbPendingDirectories, final long nbExpectedFiles) {
+    this.nbAnalysedFiles = nbAnalysedFiles;
+    this.nbMatchedFiles = nbMatchedFiles;
+    this.nbReadBytes = nbReadBytes;
+    this.queueDepth = queueDepth;
+    this.nbPendingDirectories = nbPendingDirectories;
+    this.nbExpectedFiles = nbExpectedFiles;
+  }
+
+  @Override
+  public long getNbAnalysedFiles() {
+    return nbAnalysedFiles.sum();
+  }
+
+  @Override
+  public long getNbMatchedFiles() {
+    return nbMatchedFiles.sum();
+  }
+
+  @Override
+  public long getNbReadBytes() {
+    return nbReadBytes.sum();
+  }
+
+  @Override
+  public double getFilesPerSecond() {
+    return getNbAnalysedFiles() / getElapsedSeconds();
+  }
+
+  @Override
+  public double getBytesPerSecond() {
+    return getNbReadBytes() / getElapsedSeconds();
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return queueDepth.getAsInt();
+  }
+
+  @Override
+  public int getNbPendingDirectories() {
+    return nbPendingDirectories.getAsInt();
+  }
+
+  @Override
+  public long getEtaSeconds() {
+    long nbRemainingFiles = nbExpectedFiles - getNbAnalysedFiles();
+    double filesPerSecond = getFilesPerSecond();
+    if (nbExpectedFiles <= 0 || nbRemainingFiles < 0 || filesPerSecond <= 0) {
+      return -1;
+    }
+    return (long) Math.ceil(nbRemainingFiles / filesPerSecond);
+  }
+
+  private double getElapsedSeconds() {
+    return Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)) / 1000d;
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.file.regexpr;
+
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Cheap verifications rejecting a file before its content is decoded: an allowed or denied list
+ * of extensions, a maximum size and the sniffing of a NUL byte into the first block of the file,
+ * which reveals a binary content (PDF, image, office document...).
+ */
+class SkipHeuristics {
+
+  private static final int SNIFFED_BLOCK_SIZE = 4096;
+
+  /**
+   * The reasons why a file is skipped.
+   */
+  enum Reason {
+    EXTENSION("extension"), SIZE("size"), BINARY("binary content");
+
+    private final String label;
+
+    Reason(final String label) {
+      this.label = label;
+    }
+
+    public String getLabel() {
+      return label;
+    }
+  }
+
+  private Set<String> allowedExtensions = null;
+  private Set<String> deniedExtensions = new HashSet<>();
+  private long maxSize = -1;
+  private boolean binarySniffed = false;
+
+  void setAllowedExtensions(String extensions) {
+    allowedExtensions = parseExtensions(extensions);
+  }
+
+  void setDeniedExtensions(String extensions) {
+    deniedExtensions = parseExtensions(extensions);
+  }
+
+  void setMaxSize(long maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  void setBinarySniffed(boolean binarySniffed) {
+    this.binarySniffed = binarySniffed;
+  }
+
+  /**
+   * Verifies if the given file must be skipped. The verifications are performed from the cheapest
+   * one to the costliest one.
+   * @param file the file to verify.
+   * @param attrs the attributes of the file.
+   * @return the reason of the skip, null if the file must not be skipped.
+   * @throws IOException on reading error.
+   */
+  Reason verify(Path file, BasicFileAttributes attrs) throws IOException {
+    if (allowedExtensions != null || !deniedExtensions.isEmpty()) {
+      String extension =
+          FilenameUtils.getExtension(file.getFileName().toString()).toLowerCase(Locale.ROOT);
+      if ((allowedExtensions != null && !allowedExtensions.contains(extension)) ||
+          deniedExtensions.contains(extension)) {
+        return Reason.EXTENSION;
+      }
+    }
+    if (maxSize >= 0 && attrs.size() > maxSize) {
+      return Reason.SIZE;
+    }
+    if (binarySniffed && containsNulByte(file)) {
+      return Reason.BINARY;
+    }
+    return null;
+  }
+
+  private static boolean containsNulByte(Path file) throws IOException {
+    byte[] block = new byte[SNIFFED_BLOCK_SIZE];
+    try (InputStream is = Files.newInputStream(file)) {
+      int length = 0;
+      int nbRead;
+      while (length < block.length && (nbRead = is.read(block, length, block.length - length)) >= 0) {
+        length += nbRead;
+      }
+      for (int i = 0; i < length; i++) {
+        if (block[i] == 0) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static Set<String> parseExtensions(String extensions) {
+    Set<String> result = new HashSet<>();
+    for (String extension : Arrays.asList(extensions.split(","))) {
+      String trimmed = extension.trim();
+      String name = trimmed.startsWith(".") ? trimmed.substring(1) : trimmed;
+      result.add(name.toLowerCase(Locale.ROOT));
+    }
+    return result;
+  }
+}
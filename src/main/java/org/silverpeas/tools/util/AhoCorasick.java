@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton searching several literals in one pass over a text.
+ * <p>
+ * The search is case insensitive for the ASCII letters only (the literals and the text are
+ * lowered on the fly), the other characters being compared exactly. The transitions of the
+ * ASCII characters are precomputed into a table, the other ones are followed through the failure
+ * links.
+ */
+public class AhoCorasick {
+
+  private static final int ASCII = 128;
+  private static final int[] NO_OUTPUT = new int[0];
+
+  private final int nbLiterals;
+  private final int[][] asciiTransitions;
+  private final List<Map<Character, Integer>> otherTransitions;
+  private final int[] failures;
+  private final int[][] outputs;
+
+  /**
+   * Builds the automaton of the given literals.
+   * @param literals the literals to search, their index in the list identifies them.
+   */
+  public AhoCorasick(List<String> literals) {
+    this.nbLiterals = literals.size();
+    List<int[]> ascii = new ArrayList<>();
+    List<Map<Character, Integer>> others = new ArrayList<>();
+    List<int[]> outputsOfNodes = new ArrayList<>();
+    ascii.add(newAsciiTransitions());
+    others.add(null);
+    outputsOfNodes.add(NO_OUTPUT);
+
+    // The trie
+    for (int literalIndex = 0; literalIndex < literals.size(); literalIndex++) {
+      String literal = literals.get(literalIndex);
+      int node = 0;
+      for (int i = 0; i < literal.length(); i++) {
+        char c = lower(literal.charAt(i));
+        int next = transition(ascii, others, node, c);
+        if (next < 0) {
+          next = ascii.size();
+          ascii.add(newAsciiTransitions());
+          others.add(null);
+          outputsOfNodes.add(NO_OUTPUT);
+          if (c < ASCII) {
+            ascii.get(node)[c] = next;
+          } else {
+            if (others.get(node) == null) {
+              others.set(node, new HashMap<>());
+            }
+            others.get(node).put(c, next);
+          }
+        }
+        node = next;
+      }
+      outputsOfNodes.set(node, append(outputsOfNodes.get(node), literalIndex));
+    }
+
+    // The failure links, computed breadth first
+    int nbNodes = ascii.size();
+    int[] failureLinks = new int[nbNodes];
+    Queue<Integer> queue = new ArrayDeque<>();
+    int[] rootAscii = ascii.get(0);
+    for (int c = 0; c < ASCII; c++) {
+      if (rootAscii[c] < 0) {
+        rootAscii[c] = 0;
+      } else {
+        queue.add(rootAscii[c]);
+      }
+    }
+    if (others.get(0) != null) {
+      queue.addAll(others.get(0).values());
+    }
+    while (!queue.isEmpty()) {
+      int node = queue.poll();
+      int[] nodeAscii = ascii.get(node);
+      for (int c = 0; c < ASCII; c++) {
+        int child = nodeAscii[c];
+        if (child < 0) {
+          // Precomputed transition
+          nodeAscii[c] = ascii.get(failureLinks[node])[c];
+        } else {
+          failureLinks[child] = ascii.get(failureLinks[node])[c];
+          outputsOfNodes.set(child,
+              merge(outputsOfNodes.get(child), outputsOfNodes.get(failureLinks[child])));
+          queue.add(child);
+        }
+      }
+      if (others.get(node) != null) {
+        for (Map.Entry<Character, Integer> entry : others.get(node).entrySet()) {
+          int child = entry.getValue();
+          int failure = failureLinks[node];
+          int target = transition(ascii, others, failure, entry.getKey());
+          while (target < 0 && failure != 0) {
+            failure = failureLinks[failure];
+            target = transition(ascii, others, failure, entry.getKey());
+          }
+          failureLinks[child] = Math.max(target, 0);
+          outputsOfNodes.set(child,
+              merge(outputsOfNodes.get(child), outputsOfNodes.get(failureLinks[child])));
+          queue.add(child);
+        }
+      }
+    }
+
+    this.asciiTransitions = ascii.toArray(new int[nbNodes][]);
+    this.otherTransitions = others;
+    this.failures = failureLinks;
+    this.outputs = outputsOfNodes.toArray(new int[nbNodes][]);
+  }
+
+  /**
+   * Searches the literals into the given text. The search stops as soon as all the literals have
+   * been found.
+   * @param text the text to search into.
+   * @param found the flags of the literals found, indexed as the literals given at build time.
+   * Already set flags are kept.
+   * @return the number of literals flagged as found.
+   */
+  public int search(CharSequence text, boolean[] found) {
+    int nbFound = 0;
+    for (boolean flag : found) {
+      nbFound += flag ? 1 : 0;
+    }
+    int node = 0;
+    int length = text.length();
+    for (int i = 0; i < length && nbFound < nbLiterals; i++) {
+      char c = lower(text.charAt(i));
+      if (c < ASCII) {
+        node = asciiTransitions[node][c];
+      } else {
+        int next = otherTransition(node, c);
+        while (next < 0 && node != 0) {
+          node = failures[node];
+          next = otherTransition(node, c);
+        }
+        node = Math.max(next, 0);
+      }
+      for (int literalIndex : outputs[node]) {
+        if (!found[literalIndex]) {
+          found[literalIndex] = true;
+          nbFound++;
+        }
+      }
+    }
+    return nbFound;
+  }
+
+  private int otherTransition(int node, char c) {
+    Map<Character, Integer> transitions = otherTransitions.get(node);
+    if (transitions == null) {
+      return -1;
+    }
+    Integer next = transitions.get(c);
+    return next == null ? -1 : next;
+  }
+
+  private static int transition(List<int[]> ascii, List<Map<Character, Integer>> others,
+      int node, char c) {
+    if (c < ASCII) {
+      return ascii.get(node)[c];
+    }
+    Map<Character, Integer> transitions = others.get(node);
+    if (transitions == null) {
+      return -1;
+    }
+    Integer next = transitions.get(c);
+    return next == null ? -1 : next;
+  }
+
+  private static char lower(char c) {
+    return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+  }
+
+  private static int[] newAsciiTransitions() {
+    int[] transitions = new int[ASCII];
+    Arrays.fill(transitions, -1);
+    return transitions;
+  }
+
+  private static int[] append(int[] values, int value) {
+    int[] result = Arrays.copyOf(values, values.length + 1);
+    result[values.length] = value;
+    return result;
+  }
+
+  private static int[] merge(int[] values, int[] others) {
+    int[] result = values;
+    for (int other : others) {
+      boolean present = false;
+      for (int value : result) {
+        present |= value == other;
+      }
+      if (!present) {
+        result = append(result, other);
+      }
+    }
+    return result;
+  }
+}
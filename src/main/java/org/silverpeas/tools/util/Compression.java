@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.util;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The compressions of the log files handled by the tools. The compression of a file is detected
+ * from its first bytes (its magic number), whatever the name of the file.
+ */
+public enum Compression {
+  NONE(null, null, new byte[0]),
+  GZIP("gzip", "gz", new byte[]{(byte) 0x1F, (byte) 0x8B}),
+  ZSTD("zstd", "zst", new byte[]{(byte) 0x28, (byte) 0xB5, (byte) 0x2F, (byte) 0xFD});
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final String label;
+  private final String extension;
+  private final byte[] magic;
+
+  Compression(String label, String extension, byte[] magic) {
+    this.label = label;
+    this.extension = extension;
+    this.magic = magic;
+  }
+
+  /**
+   * Gets the compression of a file.
+   * @param file the file.
+   * @return the compression of the file, NONE if it is not compressed.
+   */
+  public static Compression of(File file) throws IOException {
+    byte[] header = new byte[4];
+    int length;
+    InputStream fileIS = new FileInputStream(file);
+    try {
+      length = IOUtils.read(fileIS, header);
+    } finally {
+      IOUtils.closeQuietly(fileIS);
+    }
+    for (Compression compression : values()) {
+      if (compression != NONE && compression.magic.length <= length &&
+          compression.isMagic(header)) {
+        return compression;
+      }
+    }
+    return NONE;
+  }
+
+  /**
+   * Gets the compression given by a system property (gzip or zstd).
+   * @param property the name of the system property.
+   * @return the compression, NONE if the property is not set.
+   */
+  public static Compression fromProperty(String property) {
+    String value = System.getProperty(property);
+    if (StringUtils.isBlank(value)) {
+      return NONE;
+    }
+    for (Compression compression : values()) {
+      if (compression != NONE && (compression.label.equalsIgnoreCase(value.trim()) ||
+          compression.extension.equalsIgnoreCase(value.trim()))) {
+        return compression;
+      }
+    }
+    throw new IllegalArgumentException(
+        "Unknown compression " + value + " for " + property + " (expected gzip or zstd)");
+  }
+
+  /**
+   * Removes from a file name the extension of a compression, if any.
+   * @param fileName the name of a file (dbBuilder.log.gz for example).
+   * @return the name of the file without compression extension (dbBuilder.log for example).
+   */
+  public static String removeExtension(String fileName) {
+    for (Compression compression : values()) {
+      if (compression != NONE &&
+          StringUtils.endsWithIgnoreCase(fileName, "." + compression.extension)) {
+        return fileName.substring(0, fileName.length() - compression.extension.length() - 1);
+      }
+    }
+    return fileName;
+  }
+
+  /**
+   * Opens a reader of the lines of a text file, compressed or not, in the default charset. The
+   * file is decompressed on the fly by a dedicated thread.
+   * @param file the file to read.
+   * @return the reader of the file.
+   */
+  public static BufferedReader openReader(File file) throws IOException {
+    Compression compression = of(file);
+    InputStream fileIS = new FileInputStream(file);
+    InputStream input = fileIS;
+    try {
+      if (compression != NONE) {
+        input = new PipelinedInputStream(compression.decompress(fileIS),
+            compression.label + "-reader-" + file.getName());
+      }
+    } catch (IOException e) {
+      IOUtils.closeQuietly(fileIS);
+      throw e;
+    }
+    return IOUtils.toBufferedReader(new InputStreamReader(input));
+  }
+
+  /**
+   * Opens an output stream into a file, compressed with this compression.
+   * @param file the file to write.
+   * @return the output stream, a plain file output stream for NONE.
+   */
+  public OutputStream openOutputStream(File file) throws IOException {
+    OutputStream fileOS = FileUtils.openOutputStream(file);
+    try {
+      return compress(fileOS);
+    } catch (IOException e) {
+      IOUtils.closeQuietly(fileOS);
+      throw e;
+    }
+  }
+
+  /**
+   * Gets the suffix to add to the name of a file compressed with this compression.
+   * @return the suffix (.gz for example), an empty string for NONE.
+   */
+  public String getFileSuffix() {
+    return extension != null ? "." + extension : "";
+  }
+
+  private boolean isMagic(byte[] header) {
+    for (int i = 0; i < magic.length; i++) {
+      if (header[i] != magic[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private InputStream decompress(InputStream input) throws IOException {
+    switch (this) {
+      case GZIP:
+        return new GZIPInputStream(input, BUFFER_SIZE);
+      case ZSTD:
+        return new ZstdInputStream(input);
+      default:
+        return input;
+    }
+  }
+
+  private OutputStream compress(OutputStream output) throws IOException {
+    switch (this) {
+      case GZIP:
+        return new BufferedOutputStream(new GZIPOutputStream(output, BUFFER_SIZE), BUFFER_SIZE);
+      case ZSTD:
+        return new BufferedOutputStream(new ZstdOutputStream(output), BUFFER_SIZE);
+      default:
+        return output;
+    }
+  }
+}
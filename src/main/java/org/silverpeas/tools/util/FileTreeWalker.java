@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Walks file trees with {@link java.nio.file}: the entries of a directory are streamed by a
+ * {@link DirectoryStream} (no array of all the entries of a huge directory is built) and the
+ * attributes of each entry are read once and given to the visitor.
+ * <p>
+ * With one thread, the directories are walked breadth first from a queue. With several threads,
+ * each directory is handled by a task of a fork-join pool: the task visits the files of the
+ * directory and forks a task per accepted sub directory, so that the idle threads steal the
+ * directories still waiting. In that case the visitor is called concurrently.
+ * <p>
+ * As {@link java.io.File#isFile()} and {@link java.io.File#isDirectory()} do, the symbolic links
+ * are followed. The entries which are neither a regular file nor a directory, or which attributes
+ * can not be read, are ignored.
+ */
+public class FileTreeWalker {
+
+  /**
+   * The treatments performed on the walked entries.
+   */
+  public interface Visitor {
+
+    /**
+     * Visits a directory before its entries are walked.
+     * @param dir the directory.
+     * @param attrs the attributes of the directory.
+     * @return true if the entries of the directory must be walked, false otherwise.
+     * @throws IOException on error.
+     */
+    boolean visitDirectory(Path dir, BasicFileAttributes attrs) throws IOException;
+
+    /**
+     * Visits a regular file.
+     * @param file the file.
+     * @param attrs the attributes of the file.
+     * @throws IOException on error.
+     */
+    void visitFile(Path file, BasicFileAttributes attrs) throws IOException;
+  }
+
+  private final Visitor visitor;
+  private final int nbThreads;
+  private final AtomicInteger nbPendingDirectories = new AtomicInteger();
+
+  /**
+   * Default constructor.
+   * @param visitor the visitor of the walked entries.
+   * @param nbThreads the number of threads walking the trees.
+   */
+  public FileTreeWalker(final Visitor visitor, final int nbThreads) {
+    this.visitor = visitor;
+    this.nbThreads = nbThreads;
+  }
+
+  /**
+   * Gets the number of accepted directories which entries have not been walked yet, including
+   * the ones being walked.
+   * @return a number of directories.
+   */
+  public int getNbPendingDirectories() {
+    return nbPendingDirectories.get();
+  }
+
+  /**
+   * Walks the trees starting from the given paths. A starting path can be a file.
+   * @param starts the starting paths.
+   * @throws IOException on error.
+   */
+  public void walk(List<Path> starts) throws IOException {
+    ForkJoinPool pool = nbThreads > 1 ? new ForkJoinPool(nbThreads) : null;
+    try {
+      for (Path start : starts) {
+        BasicFileAttributes attrs = readAttributes(start);
+        if (attrs == null) {
+          continue;
+        }
+        if (attrs.isRegularFile()) {
+          visitor.visitFile(start, attrs);
+        } else if (attrs.isDirectory() && visitor.visitDirectory(start, attrs)) {
+          nbPendingDirectories.incrementAndGet();
+          if (pool != null) {
+            try {
+              pool.invoke(new DirectoryTask(start));
+            } catch (UncheckedIOException e) {
+              throw e.getCause();
+            }
+          } else {
+            walkSequentially(start);
+          }
+        }
+      }
+    } finally {
+      if (pool != null) {
+        pool.shutdown();
+      }
+    }
+  }
+
+  private void walkSequentially(Path start) throws IOException {
+    Queue<Path> dirQueue = new ArrayDeque<>();
+    dirQueue.add(start);
+    while (!dirQueue.isEmpty()) {
+      Path dir = dirQueue.poll();
+      try (DirectoryStream<Path> entries = openDirectory(dir)) {
+        if (entries == null) {
+          continue;
+        }
+        for (Path entry : entries) {
+          BasicFileAttributes attrs = readAttributes(entry);
+          if (attrs == null) {
+            continue;
+          }
+          if (attrs.isRegularFile()) {
+            visitor.visitFile(entry, attrs);
+          } else if (attrs.isDirectory() && visitor.visitDirectory(entry, attrs)) {
+            nbPendingDirectories.incrementAndGet();
+            dirQueue.add(entry);
+          }
+        }
+      } finally {
+        nbPendingDirectories.decrementAndGet();
+      }
+    }
+  }
+
+  private class DirectoryTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final Path dir;
+
+    private DirectoryTask(final Path dir) {
+      this.dir = dir;
+    }
+
+    @Override
+    protected void compute() {
+      List<DirectoryTask> subTasks = new ArrayList<>();
+      try (DirectoryStream<Path> entries = openDirectory(dir)) {
+        if (entries == null) {
+          return;
+        }
+        for (Path entry : entries) {
+          BasicFileAttributes attrs = readAttributes(entry);
+          if (attrs == null) {
+            continue;
+          }
+          if (attrs.isRegularFile()) {
+            visitor.visitFile(entry, attrs);
+          } else if (attrs.isDirectory() && visitor.visitDirectory(entry, attrs)) {
+            nbPendingDirectories.incrementAndGet();
+            subTasks.add(new DirectoryTask(entry));
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } finally {
+        nbPendingDirectories.decrementAndGet();
+      }
+      invokeAll(subTasks);
+    }
+  }
+
+  private static DirectoryStream<Path> openDirectory(Path dir) {
+    try {
+      return Files.newDirectoryStream(dir);
+    } catch (IOException e) {
+      System.err.println("Can not list " + dir + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  private static BasicFileAttributes readAttributes(Path path) {
+    try {
+      return Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+}
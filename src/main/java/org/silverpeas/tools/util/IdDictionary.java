@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A dictionary of identifiers, each distinct identifier being encoded into an int handle. The
+ * handles are dense (0, 1, 2, ... in the order of the first encoding), so they can index arrays
+ * or {@link java.util.BitSet}s, and the structures referencing the identifiers keep only their
+ * handles.
+ * <p>
+ * The identifiers are encoded in UTF-8 one after the other into a single byte array, indexed by
+ * an open addressing hash table of handles, so an identifier costs its bytes only, without any
+ * object. Decoding a handle creates a new instance of the identifier.
+ * This class is not thread safe.
+ */
+public class IdDictionary {
+
+  private static final int NONE = -1;
+
+  private byte[] bytes = new byte[4096];
+  private int[] offsets = new int[257];
+  private int[] hashes = new int[256];
+  private int[] table = newTable(512);
+  private int size = 0;
+
+  /**
+   * Encodes an identifier, which is added into the dictionary if unknown.
+   * @param id the identifier to encode.
+   * @return the handle of the identifier.
+   */
+  public int encode(String id) {
+    byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+    int hash = mix(id.hashCode());
+    int slot = slot(idBytes, hash);
+    int handle = table[slot];
+    if (handle != NONE) {
+      return handle;
+    }
+    handle = size++;
+    if (handle == hashes.length) {
+      hashes = Arrays.copyOf(hashes, handle * 2);
+      offsets = Arrays.copyOf(offsets, handle * 2 + 1);
+    }
+    int offset = offsets[handle];
+    if (offset + idBytes.length > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, offset + idBytes.length));
+    }
+    System.arraycopy(idBytes, 0, bytes, offset, idBytes.length);
+    offsets[handle + 1] = offset + idBytes.length;
+    hashes[handle] = hash;
+    table[slot] = handle;
+    if (size * 2 > table.length) {
+      rehash();
+    }
+    return handle;
+  }
+
+  /**
+   * Gets the handle of an identifier without adding it into the dictionary.
+   * @param id the identifier.
+   * @return the handle of the identifier, -1 if the identifier is unknown.
+   */
+  public int find(String id) {
+    return table[slot(id.getBytes(StandardCharsets.UTF_8), mix(id.hashCode()))];
+  }
+
+  /**
+   * Gets the identifier of a handle.
+   * @param handle a handle given by {@link #encode(String)}.
+   * @return a new instance of the identifier.
+   */
+  public String decode(int handle) {
+    return new String(bytes, offsets[handle], offsets[handle + 1] - offsets[handle],
+        StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Gets the number of identifiers, which is also the next handle.
+   * @return the number of identifiers.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the slot of the table which contains the handle of the identifier, or the free slot
+   * where it has to be stored (linear probing).
+   */
+  private int slot(byte[] idBytes, int hash) {
+    int mask = table.length - 1;
+    int slot = hash & mask;
+    int handle;
+    while ((handle = table[slot]) != NONE &&
+        (hashes[handle] != hash || !equals(idBytes, handle))) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private boolean equals(byte[] idBytes, int handle) {
+    int offset = offsets[handle];
+    if (offsets[handle + 1] - offset != idBytes.length) {
+      return false;
+    }
+    for (int i = 0; i < idBytes.length; i++) {
+      if (bytes[offset + i] != idBytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void rehash() {
+    table = newTable(table.length * 2);
+    int mask = table.length - 1;
+    for (int handle = 0; handle < size; handle++) {
+      int slot = hashes[handle] & mask;
+      while (table[slot] != NONE) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = handle;
+    }
+  }
+
+  private static int mix(int hash) {
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private static int[] newTable(int length) {
+    int[] newTable = new int[length];
+    Arrays.fill(newTable, NONE);
+    return newTable;
+  }
+}
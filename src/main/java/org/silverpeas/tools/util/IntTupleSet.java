@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.util;
+
+import java.util.Arrays;
+
+/**
+ * A set of tuples of int values (the handles of {@link IdDictionary} identifiers for example),
+ * which keeps the insertion order: each distinct tuple gets an index (0, 1, 2, ... in the order of
+ * the first insertion) from which its values are read.
+ * <p>
+ * The values of the tuples are stored one tuple after the other into a single int array, indexed
+ * by an open addressing hash table, so a tuple costs only its values.
+ * This class is not thread safe.
+ */
+public class IntTupleSet {
+
+  private static final int NONE = -1;
+
+  private final int arity;
+  private int[] values;
+  private int[] table = newTable(8);
+  private int size = 0;
+
+  /**
+   * @param arity the number of values of a tuple.
+   */
+  public IntTupleSet(int arity) {
+    this.arity = arity;
+    this.values = new int[arity * 4];
+  }
+
+  /**
+   * Adds a tuple if it is not already into the set.
+   * @param tuple the values of the tuple.
+   * @return the index of the tuple.
+   */
+  public int add(int... tuple) {
+    int slot = slot(tuple);
+    int index = table[slot];
+    if (index != NONE) {
+      return index;
+    }
+    index = size++;
+    if (size * arity > values.length) {
+      values = Arrays.copyOf(values, values.length * 2);
+    }
+    System.arraycopy(tuple, 0, values, index * arity, arity);
+    table[slot] = index;
+    if (size * 2 > table.length) {
+      rehash();
+    }
+    return index;
+  }
+
+  /**
+   * Gets the index of a tuple.
+   * @param tuple the values of the tuple.
+   * @return the index of the tuple, -1 if it is not into the set.
+   */
+  public int indexOf(int... tuple) {
+    return table[slot(tuple)];
+  }
+
+  /**
+   * Gets a value of a tuple.
+   * @param index the index of the tuple.
+   * @param field the position of the value into the tuple.
+   * @return the value.
+   */
+  public int get(int index, int field) {
+    return values[index * arity + field];
+  }
+
+  /**
+   * Gets the number of values of a tuple.
+   * @return the arity of the tuples.
+   */
+  public int getArity() {
+    return arity;
+  }
+
+  /**
+   * Gets the number of tuples.
+   * @return the number of tuples.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the indexes of the tuples grouped by their first values. The tuples are ordered by the
+   * first appearance of their prefix of the first given length, then by the one of their prefix of
+   * the second given length and so on, the tuples of a same group keeping their insertion order.
+   * @param prefixLengths the lengths of the prefixes, from the coarsest grouping to the finest one.
+   * @return the indexes of all the tuples.
+   */
+  public int[] groupedOrder(int... prefixLengths) {
+    int[] order = new int[size];
+    for (int index = 0; index < size; index++) {
+      order[index] = index;
+    }
+    for (int i = prefixLengths.length - 1; i >= 0; i--) {
+      order = sortStably(order, rankPrefixes(prefixLengths[i]));
+    }
+    return order;
+  }
+
+  /**
+   * Gets for each tuple the rank of its prefix in the order of the first appearance of the
+   * prefixes.
+   */
+  private int[] rankPrefixes(int prefixLength) {
+    IntTupleSet prefixes = new IntTupleSet(prefixLength);
+    int[] prefix = new int[prefixLength];
+    int[] ranks = new int[size];
+    for (int index = 0; index < size; index++) {
+      System.arraycopy(values, index * arity, prefix, 0, prefixLength);
+      ranks[index] = prefixes.add(prefix);
+    }
+    return ranks;
+  }
+
+  /**
+   * Sorts indexes by their ranks (counting sort), the indexes of a same rank keeping their order.
+   */
+  private static int[] sortStably(int[] order, int[] ranks) {
+    int[] positions = new int[order.length + 1];
+    for (int index : order) {
+      positions[ranks[index] + 1]++;
+    }
+    for (int rank = 1; rank < positions.length; rank++) {
+      positions[rank] += positions[rank - 1];
+    }
+    int[] sorted = new int[order.length];
+    for (int index : order) {
+      sorted[positions[ranks[index]]++] = index;
+    }
+    return sorted;
+  }
+
+  /**
+   * Gets the slot of the table which contains the index of the tuple, or the free slot where it
+   * has to be stored (linear probing).
+   */
+  private int slot(int[] tuple) {
+    int mask = table.length - 1;
+    int slot = hash(tuple, 0) & mask;
+    int index;
+    while ((index = table[slot]) != NONE && !equals(tuple, index)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private boolean equals(int[] tuple, int index) {
+    int offset = index * arity;
+    for (int field = 0; field < arity; field++) {
+      if (values[offset + field] != tuple[field]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void rehash() {
+    table = newTable(table.length * 2);
+    int mask = table.length - 1;
+    for (int index = 0; index < size; index++) {
+      int slot = hash(values, index * arity) & mask;
+      while (table[slot] != NONE) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = index;
+    }
+  }
+
+  private int hash(int[] tuple, int offset) {
+    int hash = 0;
+    for (int field = 0; field < arity; field++) {
+      hash = 31 * hash + tuple[offset + field];
+    }
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private static int[] newTable(int length) {
+    int[] newTable = new int[length];
+    Arrays.fill(newTable, NONE);
+    return newTable;
+  }
+}
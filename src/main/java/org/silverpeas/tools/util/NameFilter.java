@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.util;
+
+import java.nio.file.Path;
+import java.util.regex.Pattern;
+
+/**
+ * Filter on the name of a file or of a directory, which does not need to access the file
+ * system.
+ */
+public class NameFilter {
+
+  /**
+   * The filter accepting all the names.
+   */
+  public static final NameFilter ALL = new NameFilter(null, true);
+
+  private final Pattern pattern;
+  private final boolean mustMatch;
+
+  /**
+   * Gets a filter accepting the names matching entirely the given regular expression.
+   * @param regex the regular expression.
+   * @return the filter.
+   */
+  public static NameFilter matching(String regex) {
+    return new NameFilter(Pattern.compile(regex), true);
+  }
+
+  /**
+   * Gets a filter accepting the names which do not match entirely the given regular expression.
+   * @param regex the regular expression.
+   * @return the filter.
+   */
+  public static NameFilter notMatching(String regex) {
+    return new NameFilter(Pattern.compile(regex), false);
+  }
+
+  private NameFilter(final Pattern pattern, final boolean mustMatch) {
+    this.pattern = pattern;
+    this.mustMatch = mustMatch;
+  }
+
+  /**
+   * Indicates if the name is accepted.
+   * @param name the name to verify.
+   * @return true if accepted, false otherwise.
+   */
+  public boolean accept(String name) {
+    return pattern == null || pattern.matcher(name).matches() == mustMatch;
+  }
+
+  /**
+   * Indicates if the name of the given path is accepted.
+   * @param path the path to verify.
+   * @return true if accepted, false otherwise.
+   */
+  public boolean accept(Path path) {
+    Path name = path.getFileName();
+    return accept(name == null ? "" : name.toString());
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.util;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads an input stream from a dedicated thread, chunk after chunk, a few chunks ahead of the
+ * consumer: the costly production of the bytes (the decompression of a log for example)
+ * overlaps their consumption (the parsing of the lines).
+ * <p>
+ * The source is read and closed by the reading thread only. The errors of the source are thrown
+ * to the consumer once the chunks read before them have been consumed.
+ */
+public class PipelinedInputStream extends InputStream {
+
+  private static final int CHUNK_SIZE = 256 * 1024;
+  private static final int NB_CHUNKS_AHEAD = 4;
+  private static final Chunk END = new Chunk(null, 0, null);
+
+  private final InputStream source;
+  private final BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<Chunk>(NB_CHUNKS_AHEAD);
+  private final BlockingQueue<byte[]> freeBuffers =
+      new ArrayBlockingQueue<byte[]>(NB_CHUNKS_AHEAD + 1);
+  private final Thread reader;
+  private volatile boolean closed = false;
+  private Chunk current = null;
+  private int position = 0;
+
+  /**
+   * @param source the stream to read ahead, closed with this stream.
+   * @param name the name of the reading thread.
+   */
+  public PipelinedInputStream(InputStream source, String name) {
+    this.source = source;
+    this.reader = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        readAhead();
+      }
+    }, name);
+    this.reader.setDaemon(true);
+    this.reader.start();
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!nextChunk()) {
+      return -1;
+    }
+    return current.data[position++] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    if (!nextChunk()) {
+      return -1;
+    }
+    int nbBytes = Math.min(length, current.length - position);
+    System.arraycopy(current.data, position, buffer, offset, nbBytes);
+    position += nbBytes;
+    return nbBytes;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return current != null && current != END ? current.length - position : 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    reader.interrupt();
+    try {
+      reader.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Makes the current chunk one which has remaining bytes, if any.
+   * @return false if the end of the source has been reached.
+   */
+  private boolean nextChunk() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    if (current == END) {
+      return false;
+    }
+    if (current != null && position < current.length) {
+      return true;
+    }
+    if (current != null) {
+      freeBuffers.offer(current.data);
+    }
+    try {
+      current = chunks.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+    position = 0;
+    if (current.failure != null) {
+      IOException failure = current.failure;
+      current = END;
+      throw failure;
+    }
+    return current != END;
+  }
+
+  /**
+   * Reads the source into chunks until its end, an error or the closing of the stream.
+   */
+  private void readAhead() {
+    try {
+      int length;
+      do {
+        byte[] data = freeBuffers.poll();
+        if (data == null) {
+          data = new byte[CHUNK_SIZE];
+        }
+        length = IOUtils.read(source, data);
+        if (length > 0) {
+          chunks.put(new Chunk(data, length, null));
+        }
+      } while (length == CHUNK_SIZE && !closed);
+      chunks.put(END);
+    } catch (InterruptedException e) {
+      // The stream has been closed
+    } catch (IOException e) {
+      fail(e);
+    } catch (RuntimeException e) {
+      fail(new IOException(e));
+    } finally {
+      IOUtils.closeQuietly(source);
+    }
+  }
+
+  private void fail(IOException failure) {
+    try {
+      chunks.put(new Chunk(null, 0, failure));
+    } catch (InterruptedException e) {
+      // The stream has been closed
+    }
+  }
+
+  /**
+   * Bytes read from the source, or the error which has stopped the reading.
+   */
+  private static class Chunk {
+    private final byte[] data;
+    private final int length;
+    private final IOException failure;
+
+    private Chunk(byte[] data, int length, IOException failure) {
+      this.data = data;
+      this.length = length;
+      this.failure = failure;
+    }
+  }
+}
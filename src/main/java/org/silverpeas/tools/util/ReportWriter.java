@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.util;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Collection;
+
+/**
+ * Writes a report into a file through a large buffer of characters, encoded with an explicit
+ * charset only when the buffer is full: the fragments of the report are appended without being
+ * concatenated into intermediate strings, and the numbers are formatted into a reused builder.
+ * <p>
+ * The characters which cannot be encoded are replaced, as {@link String#getBytes(Charset)} does.
+ */
+public class ReportWriter implements Closeable, Flushable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final OutputStream output;
+  private final WritableByteChannel channel;
+  private final CharsetEncoder encoder;
+  private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+  private final ByteBuffer bytes;
+  private final StringBuilder number = new StringBuilder(20);
+
+  /**
+   * @param output the output of the report, closed with the writer.
+   * @param charset the charset of the report.
+   */
+  public ReportWriter(OutputStream output, Charset charset) {
+    this.output = output;
+    this.channel = output instanceof FileOutputStream ? ((FileOutputStream) output).getChannel() :
+        Channels.newChannel(output);
+    this.encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    this.bytes = ByteBuffer.allocate((int) (BUFFER_SIZE * encoder.maxBytesPerChar()));
+  }
+
+  /**
+   * Appends a text.
+   * @param text the text to append.
+   * @return the writer itself.
+   */
+  public ReportWriter append(String text) throws IOException {
+    int offset = 0;
+    int length = text.length();
+    while (offset < length) {
+      int count = Math.min(length - offset, chars.remaining());
+      text.getChars(offset, offset + count, chars.array(), chars.arrayOffset() + chars.position());
+      chars.position(chars.position() + count);
+      offset += count;
+      if (!chars.hasRemaining()) {
+        encode(false);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Appends a character.
+   * @param c the character to append.
+   * @return the writer itself.
+   */
+  public ReportWriter append(char c) throws IOException {
+    chars.put(c);
+    if (!chars.hasRemaining()) {
+      encode(false);
+    }
+    return this;
+  }
+
+  /**
+   * Appends the decimal representation of a number.
+   * @param value the number to append.
+   * @return the writer itself.
+   */
+  public ReportWriter append(long value) throws IOException {
+    number.setLength(0);
+    number.append(value);
+    for (int i = 0; i < number.length(); i++) {
+      append(number.charAt(i));
+    }
+    return this;
+  }
+
+  /**
+   * Appends the values of a collection separated by the given separator, as
+   * {@link StringUtil#concatValues(Collection, String)} concats them.
+   * @param values the values to append.
+   * @param separator the separator of the values.
+   * @return the writer itself.
+   */
+  public <O> ReportWriter appendValues(Collection<O> values, String separator)
+      throws IOException {
+    boolean first = true;
+    for (O value : values) {
+      if (!first) {
+        append(separator);
+      }
+      append(String.valueOf(value));
+      first = false;
+    }
+    return this;
+  }
+
+  /**
+   * Appends the values of a collection separated by a comma.
+   * @param values the values to append.
+   * @return the writer itself.
+   */
+  public <O> ReportWriter appendValues(Collection<O> values) throws IOException {
+    return appendValues(values, ", ");
+  }
+
+  /**
+   * Appends the content of a file, which is transferred by the file system (zero-copy) into the
+   * output once the buffered characters are written. The content is copied when the output is not
+   * a file output stream (a compressed stream for example).
+   * @param file the file to append.
+   * @return the writer itself.
+   */
+  public ReportWriter appendFile(File file) throws IOException {
+    encode(true);
+    FileInputStream fileIS = new FileInputStream(file);
+    try {
+      FileChannel fileChannel = fileIS.getChannel();
+      long position = 0;
+      long size = fileChannel.size();
+      while (position < size) {
+        position += fileChannel.transferTo(position, size - position, channel);
+      }
+    } finally {
+      IOUtils.closeQuietly(fileIS);
+    }
+    return this;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    encode(true);
+    output.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      // The output is flushed by its closing
+      encode(true);
+    } finally {
+      output.close();
+    }
+  }
+
+  /**
+   * Encodes the buffered characters and writes the bytes. Unless all the characters are
+   * requested, a high surrogate ending the buffer is kept to be encoded with the next character.
+   */
+  private void encode(boolean all) throws IOException {
+    chars.flip();
+    CoderResult result;
+    do {
+      result = encoder.encode(chars, bytes, false);
+      writeBytes();
+    } while (result.isOverflow());
+    if (all && chars.hasRemaining()) {
+      encoder.encode(chars, bytes, true);
+      encoder.flush(bytes);
+      writeBytes();
+      encoder.reset();
+    }
+    chars.compact();
+  }
+
+  private void writeBytes() throws IOException {
+    bytes.flip();
+    while (bytes.hasRemaining()) {
+      channel.write(bytes);
+    }
+    bytes.clear();
+  }
+}
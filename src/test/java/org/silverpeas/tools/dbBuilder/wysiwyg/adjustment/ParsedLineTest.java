@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.dbBuilder.wysiwyg.adjustment;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ParsedLineTest {
+
+  private static final String[] LINES = {"",
+      "2014-02-26 10:00:00 INFO Starting wysiwyg adjustment for component instance id almanach1",
+      "2014-02-26 10:00:01 INFO Finishing wysiwyg adjustment for component instance id kmelia4",
+      "INFO /data/almanach1/simpledoc_1000/attachments/de/421wysiwyg.txt renamed to " +
+          "421wysiwyg_de.txt with the right language suffix",
+      "INFO simpledoc_999 has been deleted",
+      "INFO /data/webPages2/simpledoc_1008/attachments/fr/215wysiwyg_fr.txt has been merged " +
+          "into /data/webPages2/simpledoc_1009/attachments/de/215wysiwyg_de.txt",
+      "INFO C:\\data\\Kmelia12\\SIMPLEDOC_5\\attachments\\EN\\node_7WYSIWYG_En.TXT will be " +
+          "deleted from the JCR",
+      "INFO Physical backup has been performed for directory /data/quickinfo3/simpledoc_1028",
+      "DEBUG abc1def2ghi3 kmelia4kmelia5/simpledoc_6simpledoc_7 a_1b2wysiwyg_.txt",
+      "DEBUG /fr/en/de/ /x/ //ab/ wysiwyg_.txt wysiwyg_f.txt 12wysiwyg /12wysiwyg",
+      "DEBUG kmelia1/simpledoc_2/a b/3wysiwyg kmelia1/simpledoc_2/a/_4wysiwyg_fr.txt",
+      "DEBUG starting wysiwyg adjustment for component instance id 12 then kmelia2"};
+
+  @Test
+  public void tokenizerFindsWhatTheRegularExpressionsFind() {
+    for (String line : LINES) {
+      assertSameParsing(line);
+    }
+  }
+
+  @Test
+  public void tokenizerFindsWhatTheRegularExpressionsFindOnRandomLines() {
+    String[] pieces = {"a", "Z", "_", "1", "42", "/", "\\", " ", ".", "wysiwyg", "WysiWyg_",
+        "simpledoc_", "txt", ".txt", "fr", "kmelia", "has been deleted",
+        "starting wysiwyg adjustment for component instance id "};
+    Random random = new Random(20140226);
+    for (int i = 0; i < 20000; i++) {
+      StringBuilder line = new StringBuilder();
+      int nbPieces = random.nextInt(16);
+      for (int j = 0; j < nbPieces; j++) {
+        line.append(pieces[random.nextInt(pieces.length)]);
+      }
+      assertSameParsing(line.toString());
+    }
+  }
+
+  @Test
+  public void aMergeLineIsParsed() {
+    ParsedLine parsedLine = ParsedLine.parse(LINES[5]);
+    assertTrue(parsedLine.contains(ParsedLine.Marker.MERGED));
+    assertFalse(parsedLine.contains(ParsedLine.Marker.NOT_MERGED));
+    assertEquals(Arrays.asList("webPages2", "webPages2"), parsedLine.getComponentIds());
+    assertEquals(Arrays.asList("simpledoc_1008", "simpledoc_1009"),
+        parsedLine.getSimpleDocIds());
+    assertEquals(Arrays.asList("215wysiwyg_fr.txt", "215wysiwyg_de.txt"),
+        parsedLine.getWysiwygNames());
+    assertEquals(Arrays.asList("fr", "de"), parsedLine.getPathLanguages());
+    assertEquals(Arrays.asList("fr", "de"), parsedLine.getWysiwygLanguages());
+    assertEquals(2, parsedLine.getOperations().size());
+    assertEquals("webPages2/simpledoc_1009/215wysiwyg",
+        parsedLine.getOperations().get(1).toString());
+    assertEquals(2, parsedLine.getBackups().size());
+    assertTrue(parsedLine.getStartedComponentIds().isEmpty());
+  }
+
+  @Test
+  public void theStartAndTheEndOfAComponentAreParsed() {
+    assertEquals(Collections.singletonList("almanach1"),
+        ParsedLine.parse(LINES[1]).getStartedComponentIds());
+    assertEquals(Collections.singletonList("kmelia4"),
+        ParsedLine.parse(LINES[2]).getEndedComponentIds());
+    assertTrue(ParsedLine.parse(LINES[2]).getStartedComponentIds().isEmpty());
+  }
+
+  private static void assertSameParsing(String line) {
+    assertEquals(line, ParsedLine.parseWithRegularExpressions(line).toString(),
+        ParsedLine.parse(line).toString());
+  }
+}
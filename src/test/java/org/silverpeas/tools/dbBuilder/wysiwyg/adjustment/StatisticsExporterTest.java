@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.dbBuilder.wysiwyg.adjustment;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.silverpeas.tools.dbBuilder.wysiwyg.adjustment.StatisticsExporter.Column;
+import org.silverpeas.tools.dbBuilder.wysiwyg.adjustment.StatisticsExporter.Format;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class StatisticsExporterTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @After
+  public void clearProperties() {
+    System.clearProperty("statsExport");
+    System.clearProperty("statsExportFile");
+  }
+
+  @Test
+  public void csvFieldsAreQuotedOnlyWhenNeeded() throws IOException {
+    List<String> lines = export(Format.CSV);
+    assertEquals(3, lines.size());
+    assertEquals(
+        "type,action,component,wysiwygBasename,sourceLanguage,sourceWysiwyg,targetLanguage," +
+            "targetWysiwyg,sourceSimpledoc,sourceStatus,targetSimpledoc,targetStatus," +
+            "nbSimpledocs,nbWysiwygBasenames,nbComponents,nbDeletedSimpledocs,components," +
+            "simpledocs,deletedSimpledocs", lines.get(0));
+    assertEquals("relation,\"merged, then deleted\",kmelia1,\"12\"\"wysiwyg\",,,,,,,,,3,,,,," +
+        "simpledoc_1 simpledoc_2,", lines.get(1));
+    assertEquals("summary,\"line\rbreak\",,,,,,,,,,,,,,,,,", lines.get(2));
+  }
+
+  @Test
+  public void jsonFieldsAreEscaped() throws IOException {
+    List<String> lines = export(Format.JSONL);
+    assertEquals(2, lines.size());
+    assertEquals("{\"type\":\"relation\",\"action\":\"merged, then deleted\"," +
+        "\"component\":\"kmelia1\",\"wysiwygBasename\":\"12\\\"wysiwyg\",\"nbSimpledocs\":3," +
+        "\"simpledocs\":[\"simpledoc_1\",\"simpledoc_2\"]}", lines.get(0));
+    assertEquals("{\"type\":\"summary\",\"action\":\"line\\u000dbreak\"}", lines.get(1));
+  }
+
+  @Test
+  public void theRequestedFormatIsReadFromTheProperties() {
+    assertNull(StatisticsExporter.getRequestedFormat());
+    System.setProperty("statsExport", " CSV ");
+    assertEquals(Format.CSV, StatisticsExporter.getRequestedFormat());
+    System.setProperty("statsExport", "jsonl");
+    assertEquals(Format.JSONL, StatisticsExporter.getRequestedFormat());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void anUnknownFormatIsRejected() {
+    System.setProperty("statsExport", "xml");
+    StatisticsExporter.getRequestedFormat();
+  }
+
+  @Test
+  public void noExporterIsOpenedWithoutFormat() throws IOException {
+    assertNull(StatisticsExporter.open(folder.newFile("dbBuilder_1.log"), null));
+  }
+
+  @Test
+  public void theExportFileIsNamedAfterTheRewrittenLogs() throws IOException {
+    File rewrittenLogs = new File(folder.getRoot(), "dbBuilder_1.log.gz");
+    StatisticsExporter.open(rewrittenLogs, Format.CSV).close();
+    assertEquals(1, FileUtils.readLines(new File(folder.getRoot(), "dbBuilder_1.log.csv"),
+        StandardCharsets.UTF_8).size());
+  }
+
+  /**
+   * Exports two records with the given format and reads the lines of the export.
+   */
+  private List<String> export(Format format) throws IOException {
+    File exportFile = new File(folder.getRoot(), "stats." + format.getExtension());
+    System.setProperty("statsExportFile", exportFile.getPath());
+    try (StatisticsExporter exporter = StatisticsExporter
+        .open(new File(folder.getRoot(), "dbBuilder_1.log"), format)) {
+      exporter.start("relation").field(Column.ACTION, "merged, then deleted")
+          .field(Column.COMPONENT, "kmelia1").field(Column.WYSIWYG_BASENAME, "12\"wysiwyg")
+          .field(Column.SOURCE_LANGUAGE, (String) null).field(Column.NB_SIMPLEDOCS, 3)
+          .field(Column.SIMPLEDOCS, Arrays.asList("simpledoc_1", "simpledoc_2")).end();
+      exporter.start("summary").field(Column.ACTION, "line\rbreak").end();
+    }
+    return Arrays.asList(
+        new String(FileUtils.readFileToByteArray(exportFile), StandardCharsets.UTF_8)
+            .split("\n"));
+  }
+}
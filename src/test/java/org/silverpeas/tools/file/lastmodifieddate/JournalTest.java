@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.file.lastmodifieddate;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JournalTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void recordsAreReadBackInTheirOrder() throws IOException {
+    Path journalFile = folder.getRoot().toPath().resolve("dates.journal");
+    int nbRecords = 2500;
+    try (Journal journal = Journal.create(journalFile)) {
+      for (int i = 0; i < nbRecords; i++) {
+        journal.record(folder.getRoot().toPath().resolve("file" + i), i, -i);
+      }
+    }
+    List<Integer> batchSizes = new ArrayList<>();
+    List<Journal.Record> records = new ArrayList<>();
+    Journal.read(journalFile, batch -> {
+      batchSizes.add(batch.size());
+      records.addAll(batch);
+    });
+    assertEquals(nbRecords, records.size());
+    assertEquals(3, batchSizes.size());
+    for (int i = 0; i < nbRecords; i++) {
+      Journal.Record record = records.get(i);
+      assertEquals(folder.getRoot().toPath().resolve("file" + i).toAbsolutePath().toString(),
+          record.path);
+      assertEquals(i, record.oldDate);
+      assertEquals(-i, record.newDate);
+    }
+  }
+
+  @Test
+  public void recordsOfSeveralThreadsAreAllWritten() throws Exception {
+    Path journalFile = folder.getRoot().toPath().resolve("dates.journal");
+    int nbThreads = 4;
+    int nbRecordsByThread = 3000;
+    ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+    try (Journal journal = Journal.create(journalFile)) {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < nbThreads; t++) {
+        final int thread = t;
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < nbRecordsByThread; i++) {
+            journal.record(folder.getRoot().toPath().resolve(thread + "-" + i), thread, i);
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    Map<String, Long> newDates = new HashMap<>();
+    Journal.read(journalFile, batch -> {
+      for (Journal.Record record : batch) {
+        newDates.put(record.path, record.newDate);
+      }
+    });
+    assertEquals(nbThreads * nbRecordsByThread, newDates.size());
+    for (int t = 0; t < nbThreads; t++) {
+      for (int i = 0; i < nbRecordsByThread; i++) {
+        String path = folder.getRoot().toPath().resolve(t + "-" + i).toAbsolutePath().toString();
+        assertEquals(Long.valueOf(i), newDates.get(path));
+      }
+    }
+  }
+
+  @Test
+  public void recordsAreWrittenPeriodicallyBeforeTheClosing() throws Exception {
+    Path journalFile = folder.getRoot().toPath().resolve("dates.journal");
+    try (Journal journal = Journal.create(journalFile)) {
+      journal.record(folder.getRoot().toPath().resolve("file"), 1, 2);
+      long end = System.currentTimeMillis() + Journal.FLUSH_PERIOD * 10;
+      while (Files.size(journalFile) <= Integer.BYTES && System.currentTimeMillis() < end) {
+        Thread.sleep(Journal.FLUSH_PERIOD / 10);
+      }
+      List<Journal.Record> records = new ArrayList<>();
+      Journal.read(journalFile, records::addAll);
+      assertEquals(1, records.size());
+      assertEquals(2, records.get(0).newDate);
+    }
+  }
+
+  @Test
+  public void anEmptyJournalHasNoRecord() throws IOException {
+    Path journalFile = folder.getRoot().toPath().resolve("dates.journal");
+    Journal.create(journalFile).close();
+    List<Journal.Record> records = new ArrayList<>();
+    Journal.read(journalFile, records::addAll);
+    assertTrue(records.isEmpty());
+  }
+
+  @Test(expected = IOException.class)
+  public void anotherFileIsNotReadAsAJournal() throws IOException {
+    Path journalFile = folder.getRoot().toPath().resolve("dates.journal");
+    Files.write(journalFile, "not a journal".getBytes("UTF-8"));
+    Journal.read(journalFile, batch -> {
+    });
+  }
+}
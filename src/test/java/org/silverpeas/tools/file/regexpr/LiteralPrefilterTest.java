@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.file.regexpr;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.silverpeas.tools.file.regexpr.LiteralPrefilter.extractRequiredLiteral;
+
+public class LiteralPrefilterTest {
+
+  @Test
+  public void theLongestLiteralIsExtracted() {
+    assertEquals("/attachments", extractRequiredLiteral("simpledoc_[0-9]+/attachments"));
+    assertEquals("wysiwyg", extractRequiredLiteral("(?i)[a-z_]*[0-9]+wysiwyg[^ ]*"));
+    assertEquals(" has been deleted", extractRequiredLiteral("kmelia[0-9]+ has been deleted"));
+  }
+
+  @Test
+  public void theLiteralIsLowered() {
+    assertEquals("silverpeas", extractRequiredLiteral("^SilverPeas$"));
+  }
+
+  @Test
+  public void optionalCharactersAreExcluded() {
+    assertEquals("colo", extractRequiredLiteral("colou?r"));
+    assertEquals("abcd", extractRequiredLiteral("abcdx*yz"));
+    assertEquals("abcd", extractRequiredLiteral("abcde{0,2}"));
+    assertEquals("abcde", extractRequiredLiteral("abcde+"));
+  }
+
+  @Test
+  public void escapedAndQuotedCharactersAreLiterals() {
+    assertEquals("a.b*c", extractRequiredLiteral("\\Qa.b*c\\E"));
+    assertEquals("file.txt", extractRequiredLiteral("\\d+file\\.txt"));
+  }
+
+  @Test
+  public void groupsAndClassesInterruptTheLiterals() {
+    assertEquals("before", extractRequiredLiteral("before(in|side)aft"));
+    assertEquals("after", extractRequiredLiteral("be[a-z]after"));
+  }
+
+  @Test
+  public void noLiteralIsExtractedWhenNotSafe() {
+    assertNull(extractRequiredLiteral("first|second"));
+    assertNull(extractRequiredLiteral("ab"));
+    assertNull(extractRequiredLiteral("(?x)abc def"));
+    assertNull(extractRequiredLiteral("(?iu)abcdef"));
+    assertNull(extractRequiredLiteral("[unclosed"));
+  }
+
+  @Test
+  public void onlyThePatternsWhichLiteralIsFoundAreCandidates() {
+    RegExprMatcher.Config config = new RegExprMatcher.Config();
+    config.set("kmelia[0-9]+ has been deleted").set("|").set("!simpledoc_[0-9]+").set("|")
+        .set("a|b");
+    LiteralPrefilter prefilter = new LiteralPrefilter(config.getPatternConfigs());
+    assertTrue(prefilter.isUseful());
+    assertArrayEquals(new boolean[]{true, false, true},
+        prefilter.verify("KMELIA12 HAS BEEN DELETED"));
+    assertArrayEquals(new boolean[]{false, true, true},
+        prefilter.verify("simpledoc_12 has been moved"));
+  }
+
+  @Test
+  public void aPrefilterWithoutLiteralIsUseless() {
+    RegExprMatcher.Config config = new RegExprMatcher.Config();
+    config.set("a|b");
+    LiteralPrefilter prefilter = new LiteralPrefilter(config.getPatternConfigs());
+    assertFalse(prefilter.isUseful());
+    assertArrayEquals(new boolean[]{true}, prefilter.verify("anything"));
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.file.regexpr;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MappedCharSequenceTest {
+
+  private static final char REPLACEMENT = '\uFFFD';
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void utf8ContentIsDecodedAsTheJdkDoes() throws IOException {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; text.length() < 100000; i++) {
+      // 1 to 4 bytes sequences, so the code points straddle the block boundaries
+      text.append("line ").append(i).append(" é€ 😀 ü\n");
+    }
+    String expected = text.toString();
+    MappedCharSequence content = map(expected.getBytes(StandardCharsets.UTF_8),
+        StandardCharsets.UTF_8);
+    try {
+      assertEquals(expected.length(), content.length());
+      // Backward access, which switches between the cached blocks
+      for (int i = expected.length() - 1; i >= 0; i -= 7) {
+        assertEquals("index " + i, expected.charAt(i), content.charAt(i));
+      }
+      assertEquals(expected, content.toString());
+      assertEquals(expected.substring(40000, 50000), content.subSequence(40000, 50000).toString());
+    } finally {
+      content.release();
+    }
+  }
+
+  @Test
+  public void aPatternMatchesAcrossTheBlocks() throws IOException {
+    StringBuilder text = new StringBuilder();
+    while (text.length() < 8190) {
+      text.append('é');
+    }
+    text.append("kmelia12/simpledoc_34");
+    MappedCharSequence content =
+        map(text.toString().getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    try {
+      Matcher matcher = Pattern.compile("kmelia[0-9]+/simpledoc_[0-9]+").matcher(content);
+      assertTrue(matcher.find());
+      assertEquals(8190, matcher.start());
+      assertEquals("kmelia12/simpledoc_34", matcher.group());
+    } finally {
+      content.release();
+    }
+  }
+
+  @Test
+  public void malformedUtf8BytesAreReplaced() throws IOException {
+    byte[] bytes = {
+        'a', (byte) 0xFF, 'b',
+        // overlong encoding of '/'
+        (byte) 0xC0, (byte) 0xAF, 'c',
+        // encoded surrogate
+        (byte) 0xED, (byte) 0xA0, (byte) 0x80, 'd',
+        // truncated sequence
+        (byte) 0xE2, (byte) 0x82};
+    MappedCharSequence content = map(bytes, StandardCharsets.UTF_8);
+    try {
+      assertEquals("a" + REPLACEMENT + "b" + REPLACEMENT + REPLACEMENT + "c" + REPLACEMENT +
+          REPLACEMENT + REPLACEMENT + "d" + REPLACEMENT + REPLACEMENT, content.toString());
+    } finally {
+      content.release();
+    }
+  }
+
+  @Test
+  public void singleByteCharsetsAreDecoded() throws IOException {
+    byte[] bytes = {'c', (byte) 0xE9, 't', (byte) 0xE9};
+    MappedCharSequence latin1 = map(bytes, StandardCharsets.ISO_8859_1);
+    try {
+      assertEquals("cété", latin1.toString());
+      assertEquals("ét", latin1.subSequence(1, 3).toString());
+    } finally {
+      latin1.release();
+    }
+    MappedCharSequence ascii = map(bytes, StandardCharsets.US_ASCII);
+    try {
+      assertEquals("c" + REPLACEMENT + "t" + REPLACEMENT, ascii.toString());
+    } finally {
+      ascii.release();
+    }
+  }
+
+  @Test
+  public void anEmptyFileIsAnEmptyContent() throws IOException {
+    MappedCharSequence content = map(new byte[0], StandardCharsets.UTF_8);
+    try {
+      assertEquals(0, content.length());
+      assertEquals("", content.toString());
+    } finally {
+      content.release();
+    }
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void anIndexOutOfTheContentIsRejected() throws IOException {
+    MappedCharSequence content = map("abc".getBytes(StandardCharsets.UTF_8),
+        StandardCharsets.UTF_8);
+    try {
+      content.charAt(3);
+    } finally {
+      content.release();
+    }
+  }
+
+  @Test
+  public void onlySomeCharsetsAreHandled() {
+    assertTrue(MappedCharSequence.isHandled(StandardCharsets.UTF_8));
+    assertTrue(MappedCharSequence.isHandled(StandardCharsets.ISO_8859_1));
+    assertTrue(MappedCharSequence.isHandled(StandardCharsets.US_ASCII));
+    assertFalse(MappedCharSequence.isHandled(StandardCharsets.UTF_16));
+  }
+
+  private MappedCharSequence map(byte[] bytes, Charset charset) throws IOException {
+    Path file = folder.newFile().toPath();
+    Files.write(file, bytes);
+    return MappedCharSequence.map(file, charset);
+  }
+}
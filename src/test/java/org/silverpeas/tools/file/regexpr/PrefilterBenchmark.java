@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.file.regexpr;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.lang3.time.DurationFormatUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Compares the duration of a search performed with and without the literal prefilter on a
+ * synthetic tree generated into the temporary folder.
+ * <p>
+ * Parameters (all optional): the number of files, the size in bytes of each file and the
+ * percentage of files containing the searched literals.
+ */
+public class PrefilterBenchmark {
+
+  private static final String[] WORDS =
+      {"silverpeas", "kmelia", "component", "publication", "attachment", "node", "content",
+          "version", "user", "group", "space", "instance", "document", "wysiwig", "simpledoc"};
+  private static final String[] CONDITIONS =
+      {"(?i)[a-z_]*[0-9]+wysiwyg[^ ]*", "|", "simpledoc_[0-9]+/attachments", "|",
+          "!kmelia[0-9]+ has been deleted"};
+  private static final int NB_ROUNDS = 3;
+
+  public static void main(String[] args) throws Exception {
+    int nbFiles = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    int fileSize = args.length > 1 ? Integer.parseInt(args[1]) : 16384;
+    int matchingPercentage = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+    File root = Files.createTempDirectory("regexpr-benchmark").toFile();
+    try {
+      System.out.println("Generating " + nbFiles + " files of " + fileSize + " bytes into " + root);
+      generate(root, nbFiles, fileSize, matchingPercentage);
+      long[] bestDurations = {Long.MAX_VALUE, Long.MAX_VALUE};
+      for (int round = 1; round <= NB_ROUNDS; round++) {
+        for (int i = 0; i < 2; i++) {
+          boolean prefilter = i == 1;
+          long duration = measure(root, prefilter);
+          bestDurations[i] = Math.min(bestDurations[i], duration);
+          System.out.println("Round " + round + (prefilter ? " with" : " without") +
+              " prefilter: " + DurationFormatUtils.formatDurationHMS(duration));
+        }
+      }
+      System.out.println(
+          "Best without prefilter: " + DurationFormatUtils.formatDurationHMS(bestDurations[0]));
+      System.out.println(
+          "Best with prefilter: " + DurationFormatUtils.formatDurationHMS(bestDurations[1]));
+    } finally {
+      FileUtils.deleteQuietly(root);
+    }
+  }
+
+  private static long measure(File root, boolean prefilter) throws Exception {
+    RegExprMatcher.Config config = new RegExprMatcher.Config();
+    config.set("-prefilter", String.valueOf(prefilter));
+    for (String condition : CONDITIONS) {
+      config.set(condition);
+    }
+    PrintStream out = System.out;
+    System.setOut(new PrintStream(new NullOutputStream()));
+    try {
+      long start = System.currentTimeMillis();
+      RegExprMatcher.execute(config, Collections.singletonList(root.getPath()));
+      return System.currentTimeMillis() - start;
+    } finally {
+      System.setOut(out);
+    }
+  }
+
+  private static void generate(File root, int nbFiles, int fileSize, int matchingPercentage)
+      throws IOException {
+    Random random = new Random(nbFiles);
+    StringBuilder content = new StringBuilder(fileSize + 64);
+    for (int i = 0; i < nbFiles; i++) {
+      File folder = new File(root, "folder" + (i % 100));
+      content.setLength(0);
+      while (content.length() < fileSize) {
+        content.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(1000))
+            .append(random.nextInt(10) == 0 ? '\n' : ' ');
+      }
+      if (random.nextInt(100) < matchingPercentage) {
+        content.append("\nkmelia").append(i).append("/simpledoc_").append(i)
+            .append("/attachments/fr/").append(i).append("wysiwyg_fr.txt");
+      }
+      FileUtils.writeStringToFile(new File(folder, "file" + i + ".txt"), content.toString(),
+          StandardCharsets.UTF_8.name());
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.file.regexpr;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.assertTrue;
+
+public class ProgressReporterTest {
+
+  @Test
+  public void aFailedReportDoesNotStopTheNextOnes() throws InterruptedException {
+    AtomicInteger nbReports = new AtomicInteger();
+    ScanMetrics metrics = new ScanMetrics(new LongAdder(), new LongAdder(), new LongAdder(), () -> {
+      if (nbReports.incrementAndGet() == 1) {
+        throw new IllegalStateException("first report");
+      }
+      return 0;
+    }, () -> 0, 0);
+    ProgressReporter reporter = ProgressReporter.start(metrics, 1);
+    try {
+      long end = System.currentTimeMillis() + 10000;
+      while (nbReports.get() < 2 && System.currentTimeMillis() < end) {
+        Thread.sleep(100);
+      }
+    } finally {
+      reporter.close();
+    }
+    assertTrue(nbReports.get() >= 2);
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.file.regexpr;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class RegExprMatcherTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void theMappedCharsetIsVerifiedWhateverTheOrderOfTheDirectives() {
+    RegExprMatcher.Config config = new RegExprMatcher.Config().set("-charset", "windows-1252")
+        .set("-content", "mapped").set("-charset", "UTF-8");
+    config.verify();
+    assertEquals(StandardCharsets.UTF_8, config.getCharset());
+
+    config = new RegExprMatcher.Config().set("-charset", "windows-1252")
+        .set("-charset", "UTF-8").set("-content", "mapped");
+    config.verify();
+    assertEquals(StandardCharsets.UTF_8, config.getCharset());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void anUnmappableCharsetIsRejectedAfterTheDirectives() {
+    new RegExprMatcher.Config().set("-content", "mapped").set("-charset", "windows-1252")
+        .verify();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void anUnmappableCharsetIsRejectedBeforeTheSearch() throws Exception {
+    RegExprMatcher.Config config = new RegExprMatcher.Config().set("-charset", "windows-1252")
+        .set("-content", "mapped").set("hello").set("|");
+    RegExprMatcher.execute(config, Collections.singletonList(folder.getRoot().getPath()));
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.file.regexpr;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+
+public class ResultSinkTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void aFileNamedLikeTheEndIsWritten() throws IOException {
+    Path outputFile = folder.getRoot().toPath().resolve("matched.txt");
+    try (ResultSink sink = ResultSink.open(outputFile, ResultSink.Format.NUL)) {
+      sink.accept(Paths.get("END"));
+      sink.accept(Paths.get("after"));
+    }
+    assertEquals("END\0after\0",
+        new String(Files.readAllBytes(outputFile), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void jsonPathsAreEscaped() throws IOException {
+    Path outputFile = folder.getRoot().toPath().resolve("matched.jsonl");
+    try (ResultSink sink = ResultSink.open(outputFile, ResultSink.Format.JSONL)) {
+      sink.accept(Paths.get("a\"b\\c\td"));
+    }
+    assertEquals("{\"path\":\"a\\\"b\\\\c\\u0009d\"}\n",
+        new String(Files.readAllBytes(outputFile), StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.file.regexpr;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ScanIndexTest {
+
+  private static final String SIGNATURE = "UTF-8|text";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void recordedEntriesAreReadBackByTheNextSearch() throws IOException {
+    Path indexFile = indexFile();
+    List<String> keys = Arrays.asList("a", "b");
+    try (ScanIndex index = ScanIndex.open(indexFile, SIGNATURE, keys, roots("root"))) {
+      assertEquals(0, index.getNbPreviousEntries());
+      index.put(path("root", "dir", "file.txt"), new ScanIndex.Entry(12, 34, true, 56, 3, 2));
+      index.put(path("root", "other.txt"), new ScanIndex.Entry(1, 2, false, 0, 1, 0));
+      index.complete();
+    }
+    try (ScanIndex index = ScanIndex.open(indexFile, SIGNATURE, keys, roots("root"))) {
+      assertEquals(2, index.getNbPreviousEntries());
+      ScanIndex.Entry entry = index.get(path("root", "dir", "file.txt"));
+      assertNotNull(entry);
+      assertEquals(12, entry.size);
+      assertEquals(34, entry.lastModified);
+      assertTrue(entry.hashed);
+      assertEquals(56, entry.hash);
+      assertEquals(3, entry.evaluatedMask);
+      assertEquals(2, entry.foundMask);
+      entry = index.get(path("root", "other.txt"));
+      assertNotNull(entry);
+      assertFalse(entry.hashed);
+      assertNull(index.get(path("root", "dir", "unknown.txt")));
+    }
+    assertFalse(Files.exists(indexFile.resolveSibling(indexFile.getFileName() + ".new")));
+  }
+
+  @Test
+  public void masksFollowThePatternsWhenTheyChange() throws IOException {
+    Path indexFile = indexFile();
+    try (ScanIndex index = ScanIndex
+        .open(indexFile, SIGNATURE, Arrays.asList("a", "b", "c"), roots("root"))) {
+      index.put(path("root", "file.txt"), new ScanIndex.Entry(1, 1, false, 0, 7, 5));
+      index.complete();
+    }
+    try (ScanIndex index = ScanIndex
+        .open(indexFile, SIGNATURE, Arrays.asList("c", "d", "a"), roots("root"))) {
+      ScanIndex.Entry entry = index.get(path("root", "file.txt"));
+      // "a" moves from bit 0 to bit 2, "c" from bit 2 to bit 0, "b" is forgotten
+      assertEquals(5, entry.evaluatedMask);
+      assertEquals(5, entry.foundMask);
+    }
+  }
+
+  @Test
+  public void anInterruptedSearchLeavesTheIndexUnchanged() throws IOException {
+    Path indexFile = indexFile();
+    List<String> keys = Collections.singletonList("a");
+    try (ScanIndex index = ScanIndex.open(indexFile, SIGNATURE, keys, roots("root"))) {
+      index.put(path("root", "file.txt"), new ScanIndex.Entry(1, 1, false, 0, 1, 1));
+      index.complete();
+    }
+    byte[] content = Files.readAllBytes(indexFile);
+    try (ScanIndex index = ScanIndex.open(indexFile, SIGNATURE, keys, roots("root"))) {
+      index.put(path("root", "new.txt"), new ScanIndex.Entry(1, 1, false, 0, 1, 0));
+    }
+    assertTrue(Arrays.equals(content, Files.readAllBytes(indexFile)));
+    assertFalse(Files.exists(indexFile.resolveSibling(indexFile.getFileName() + ".new")));
+  }
+
+  @Test
+  public void entriesOutsideTheWalkedPathsAreKept() throws IOException {
+    Path indexFile = indexFile();
+    List<String> keys = Collections.singletonList("a");
+    try (ScanIndex index = ScanIndex.open(indexFile, SIGNATURE, keys, roots("first"))) {
+      index.put(path("first", "file.txt"), new ScanIndex.Entry(1, 1, false, 0, 1, 1));
+      index.complete();
+    }
+    try (ScanIndex index = ScanIndex.open(indexFile, SIGNATURE, keys, roots("firstly"))) {
+      // a sibling sharing the prefix of the walked path is not under it
+      assertEquals(0, index.getNbPreviousEntries());
+      index.put(path("firstly", "file.txt"), new ScanIndex.Entry(2, 2, false, 0, 1, 0));
+      index.complete();
+    }
+    try (ScanIndex index = ScanIndex
+        .open(indexFile, SIGNATURE, keys, roots("first", "firstly"))) {
+      assertEquals(2, index.getNbPreviousEntries());
+      assertEquals(1, index.get(path("first", "file.txt")).size);
+      assertEquals(2, index.get(path("firstly", "file.txt")).size);
+    }
+  }
+
+  @Test
+  public void aTruncatedIndexIsIgnored() throws IOException {
+    Path indexFile = indexFile();
+    List<String> keys = Collections.singletonList("a");
+    try (ScanIndex index = ScanIndex.open(indexFile, SIGNATURE, keys, roots("root"))) {
+      index.put(path("root", "first.txt"), new ScanIndex.Entry(1, 1, false, 0, 1, 1));
+      index.put(path("root", "second.txt"), new ScanIndex.Entry(1, 1, false, 0, 1, 1));
+      index.complete();
+    }
+    byte[] content = Files.readAllBytes(indexFile);
+    Files.write(indexFile, Arrays.copyOf(content, content.length - 3));
+    try (ScanIndex index = ScanIndex.open(indexFile, SIGNATURE, keys, roots("root"))) {
+      assertEquals(0, index.getNbPreviousEntries());
+      assertNull(index.get(path("root", "first.txt")));
+    }
+  }
+
+  @Test
+  public void anotherSignatureDiscardsTheIndex() throws IOException {
+    Path indexFile = indexFile();
+    List<String> keys = Collections.singletonList("a");
+    try (ScanIndex index = ScanIndex.open(indexFile, SIGNATURE, keys, roots("root"))) {
+      index.put(path("root", "file.txt"), new ScanIndex.Entry(1, 1, false, 0, 1, 1));
+      index.complete();
+    }
+    try (ScanIndex index = ScanIndex.open(indexFile, "ISO-8859-1|text", keys, roots("root"))) {
+      assertEquals(0, index.getNbPreviousEntries());
+      assertNull(index.get(path("root", "file.txt")));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void tooManyPatternsAreRejected() throws IOException {
+    String[] keys = new String[ScanIndex.MAX_PATTERNS + 1];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = "pattern" + i;
+    }
+    ScanIndex.open(indexFile(), SIGNATURE, Arrays.asList(keys), roots("root")).close();
+  }
+
+  private Path indexFile() {
+    return folder.getRoot().toPath().resolve("scan.idx");
+  }
+
+  private List<Path> roots(String... names) {
+    Path[] roots = new Path[names.length];
+    for (int i = 0; i < names.length; i++) {
+      roots[i] = folder.getRoot().toPath().resolve(names[i]);
+    }
+    return Arrays.asList(roots);
+  }
+
+  private String path(String... names) {
+    Path path = folder.getRoot().toPath().toAbsolutePath().normalize();
+    for (String name : names) {
+      path = path.resolve(name);
+    }
+    return path.toString();
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.file.regexpr;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SkipHeuristicsTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void extensionsAreComparedWhateverTheLocale() throws IOException {
+    Locale defaultLocale = Locale.getDefault();
+    Locale.setDefault(new Locale("tr", "TR"));
+    try {
+      SkipHeuristics heuristics = new SkipHeuristics();
+      heuristics.setAllowedExtensions("HTML, .INI");
+      assertNull(verify(heuristics, "page.html", "<html/>"));
+      assertNull(verify(heuristics, "settings.ini", "a=b"));
+      heuristics.setAllowedExtensions("ini");
+      assertNull(verify(heuristics, "SETUP.INI", "a=b"));
+      assertEquals(SkipHeuristics.Reason.EXTENSION, verify(heuristics, "notes.txt", "text"));
+    } finally {
+      Locale.setDefault(defaultLocale);
+    }
+  }
+
+  @Test
+  public void deniedExtensionsAreSkipped() throws IOException {
+    SkipHeuristics heuristics = new SkipHeuristics();
+    heuristics.setDeniedExtensions("pdf,jpg");
+    assertEquals(SkipHeuristics.Reason.EXTENSION, verify(heuristics, "doc.PDF", "%PDF"));
+    assertNull(verify(heuristics, "doc.txt", "text"));
+  }
+
+  @Test
+  public void filesLargerThanTheMaximumSizeAreSkipped() throws IOException {
+    SkipHeuristics heuristics = new SkipHeuristics();
+    heuristics.setMaxSize(4);
+    assertNull(verify(heuristics, "small.txt", "1234"));
+    assertEquals(SkipHeuristics.Reason.SIZE, verify(heuristics, "large.txt", "12345"));
+  }
+
+  @Test
+  public void binaryContentsAreSkippedOnlyWhenSniffed() throws IOException {
+    SkipHeuristics heuristics = new SkipHeuristics();
+    assertNull(verify(heuristics, "image.bin", "GIF\0"));
+    heuristics.setBinarySniffed(true);
+    assertEquals(SkipHeuristics.Reason.BINARY, verify(heuristics, "image.bin", "GIF\0"));
+    assertNull(verify(heuristics, "text.txt", "no nul byte"));
+  }
+
+  private SkipHeuristics.Reason verify(SkipHeuristics heuristics, String name, String content)
+      throws IOException {
+    Path file = folder.getRoot().toPath().resolve(name);
+    Files.write(file, content.getBytes("ISO-8859-1"));
+    return heuristics.verify(file, Files.readAttributes(file, BasicFileAttributes.class));
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class AhoCorasickTest {
+
+  @Test
+  public void overlappingLiteralsAreAllFound() {
+    AhoCorasick automaton = new AhoCorasick(Arrays.asList("he", "she", "his", "hers", "none"));
+    boolean[] found = new boolean[5];
+    assertEquals(3, automaton.search("ushers", found));
+    assertArrayEquals(new boolean[]{true, true, false, true, false}, found);
+  }
+
+  @Test
+  public void literalsFoundThroughFailureLinks() {
+    AhoCorasick automaton = new AhoCorasick(Arrays.asList("abcd", "bce"));
+    boolean[] found = new boolean[2];
+    assertEquals(1, automaton.search("xabcex", found));
+    assertArrayEquals(new boolean[]{false, true}, found);
+  }
+
+  @Test
+  public void asciiLettersAreCaseInsensitive() {
+    AhoCorasick automaton = new AhoCorasick(Arrays.asList("kmelia", "Wysiwyg"));
+    boolean[] found = new boolean[2];
+    assertEquals(2, automaton.search("the KMELIA12 component has a wysiWYG file", found));
+    assertArrayEquals(new boolean[]{true, true}, found);
+  }
+
+  @Test
+  public void nonAsciiCharactersAreComparedExactly() {
+    AhoCorasick automaton = new AhoCorasick(Arrays.asList("été", "ÉTÉ", "€uro"));
+    boolean[] found = new boolean[3];
+    assertEquals(2, automaton.search("un été à 10 €uros", found));
+    assertArrayEquals(new boolean[]{true, false, true}, found);
+  }
+
+  @Test
+  public void alreadyFoundLiteralsAreKept() {
+    AhoCorasick automaton = new AhoCorasick(Arrays.asList("first", "second"));
+    boolean[] found = {true, false};
+    assertEquals(1, automaton.search("nothing to find", found));
+    assertEquals(2, automaton.search("the second one", found));
+    assertArrayEquals(new boolean[]{true, true}, found);
+  }
+
+  @Test
+  public void emptyTextFindsNothing() {
+    AhoCorasick automaton = new AhoCorasick(Collections.singletonList("abc"));
+    boolean[] found = new boolean[1];
+    assertEquals(0, automaton.search("", found));
+    assertArrayEquals(new boolean[]{false}, found);
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CompressionTest {
+
+  private static final String PROPERTY = "compressionTest";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @After
+  public void clearProperty() {
+    System.clearProperty(PROPERTY);
+  }
+
+  @Test
+  public void compressedFilesAreReadBack() throws IOException {
+    for (Compression compression : Compression.values()) {
+      File file = folder.newFile("dbBuilder_" + compression + ".log");
+      int nbLines = 50000;
+      try (OutputStream output = compression.openOutputStream(file)) {
+        for (int i = 0; i < nbLines; i++) {
+          output.write(("INFO content of simpledoc_" + i + " checked\n")
+              .getBytes(StandardCharsets.US_ASCII));
+        }
+      }
+      assertEquals(compression, Compression.of(file));
+      try (BufferedReader reader = Compression.openReader(file)) {
+        for (int i = 0; i < nbLines; i++) {
+          assertEquals("INFO content of simpledoc_" + i + " checked", reader.readLine());
+        }
+        assertNull(reader.readLine());
+      }
+    }
+  }
+
+  @Test
+  public void theCompressionIsDetectedWhateverTheFileName() throws IOException {
+    File file = folder.newFile("dbBuilder.log");
+    try (OutputStream output = Compression.ZSTD.openOutputStream(file)) {
+      output.write("zstd".getBytes(StandardCharsets.US_ASCII));
+    }
+    assertEquals(Compression.ZSTD, Compression.of(file));
+    file = folder.newFile("dbBuilder.log.zst");
+    try (OutputStream output = Compression.GZIP.openOutputStream(file)) {
+      output.write("gzip".getBytes(StandardCharsets.US_ASCII));
+    }
+    assertEquals(Compression.GZIP, Compression.of(file));
+  }
+
+  @Test
+  public void shortOrPlainFilesAreNotCompressed() throws IOException {
+    File file = folder.newFile("short.log");
+    assertEquals(Compression.NONE, Compression.of(file));
+    FileUtils.writeByteArrayToFile(file, new byte[]{(byte) 0x28, (byte) 0xB5});
+    assertEquals(Compression.NONE, Compression.of(file));
+    FileUtils.writeByteArrayToFile(file, new byte[]{(byte) 0x1F});
+    assertEquals(Compression.NONE, Compression.of(file));
+    FileUtils.writeStringToFile(file, "INFO plain text\n", StandardCharsets.US_ASCII);
+    assertEquals(Compression.NONE, Compression.of(file));
+  }
+
+  @Test
+  public void theCompressionIsReadFromAProperty() {
+    assertEquals(Compression.NONE, Compression.fromProperty(PROPERTY));
+    System.setProperty(PROPERTY, " GZIP ");
+    assertEquals(Compression.GZIP, Compression.fromProperty(PROPERTY));
+    System.setProperty(PROPERTY, "zst");
+    assertEquals(Compression.ZSTD, Compression.fromProperty(PROPERTY));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void anUnknownCompressionIsRejected() {
+    System.setProperty(PROPERTY, "bzip2");
+    Compression.fromProperty(PROPERTY);
+  }
+
+  @Test
+  public void extensionsAreRemovedAndAdded() {
+    assertEquals("dbBuilder.log", Compression.removeExtension("dbBuilder.log.gz"));
+    assertEquals("dbBuilder.log", Compression.removeExtension("dbBuilder.log.ZST"));
+    assertEquals("dbBuilder.log", Compression.removeExtension("dbBuilder.log"));
+    assertEquals(".gz", Compression.GZIP.getFileSuffix());
+    assertEquals(".zst", Compression.ZSTD.getFileSuffix());
+    assertEquals("", Compression.NONE.getFileSuffix());
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+public class IdDictionaryTest {
+
+  @Test
+  public void handlesAreDenseAndStable() {
+    IdDictionary dictionary = new IdDictionary();
+    assertEquals(0, dictionary.encode("kmelia1"));
+    assertEquals(1, dictionary.encode("simpledoc_2"));
+    assertEquals(0, dictionary.encode("kmelia1"));
+    assertEquals(2, dictionary.encode(""));
+    assertEquals(3, dictionary.size());
+    assertEquals("kmelia1", dictionary.decode(0));
+    assertEquals("simpledoc_2", dictionary.decode(1));
+    assertEquals("", dictionary.decode(2));
+  }
+
+  @Test
+  public void findDoesNotAddTheIdentifier() {
+    IdDictionary dictionary = new IdDictionary();
+    dictionary.encode("almanach1");
+    assertEquals(0, dictionary.find("almanach1"));
+    assertEquals(-1, dictionary.find("almanach2"));
+    assertEquals(1, dictionary.size());
+  }
+
+  @Test
+  public void manyIdentifiersSurviveTheGrowths() {
+    IdDictionary dictionary = new IdDictionary();
+    int nbIds = 100000;
+    for (int i = 0; i < nbIds; i++) {
+      assertEquals(i, dictionary.encode("simpledoc_" + i));
+    }
+    assertEquals(nbIds, dictionary.size());
+    for (int i = 0; i < nbIds; i++) {
+      assertEquals(i, dictionary.find("simpledoc_" + i));
+      assertEquals("simpledoc_" + i, dictionary.decode(i));
+    }
+  }
+
+  @Test
+  public void nonAsciiIdentifiersAreKept() {
+    IdDictionary dictionary = new IdDictionary();
+    int handle = dictionary.encode("wysiwyg_é€😀");
+    assertEquals(handle, dictionary.find("wysiwyg_é€😀"));
+    assertEquals("wysiwyg_é€😀", dictionary.decode(handle));
+  }
+
+  @Test
+  public void decodingCreatesANewInstance() {
+    IdDictionary dictionary = new IdDictionary();
+    String id = "webPages2";
+    int handle = dictionary.encode(id);
+    assertNotSame(id, dictionary.decode(handle));
+    assertNotSame(dictionary.decode(handle), dictionary.decode(handle));
+  }
+}
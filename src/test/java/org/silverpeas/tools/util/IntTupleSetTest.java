@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class IntTupleSetTest {
+
+  @Test
+  public void tuplesKeepTheirInsertionIndex() {
+    IntTupleSet set = new IntTupleSet(3);
+    assertEquals(0, set.add(1, 2, 3));
+    assertEquals(1, set.add(3, 2, 1));
+    assertEquals(0, set.add(1, 2, 3));
+    assertEquals(2, set.add(-1, -1, -1));
+    assertEquals(3, set.size());
+    assertEquals(3, set.getArity());
+    assertEquals(1, set.indexOf(3, 2, 1));
+    assertEquals(-1, set.indexOf(1, 2, 4));
+    assertEquals(3, set.get(1, 0));
+    assertEquals(1, set.get(1, 2));
+    assertEquals(-1, set.get(2, 1));
+  }
+
+  @Test
+  public void manyTuplesSurviveTheGrowths() {
+    IntTupleSet set = new IntTupleSet(2);
+    int nbTuples = 100000;
+    for (int i = 0; i < nbTuples; i++) {
+      assertEquals(i, set.add(i / 100, i % 100));
+    }
+    assertEquals(nbTuples, set.size());
+    for (int i = 0; i < nbTuples; i++) {
+      assertEquals(i, set.indexOf(i / 100, i % 100));
+      assertEquals(i / 100, set.get(i, 0));
+      assertEquals(i % 100, set.get(i, 1));
+    }
+  }
+
+  @Test
+  public void groupedOrderFollowsTheFirstAppearanceOfThePrefixes() {
+    IntTupleSet set = new IntTupleSet(3);
+    set.add(7, 1, 0);
+    set.add(5, 2, 0);
+    set.add(7, 2, 0);
+    set.add(5, 2, 1);
+    set.add(7, 1, 1);
+    set.add(5, 1, 0);
+    assertArrayEquals(new int[]{0, 2, 4, 1, 3, 5}, set.groupedOrder(1));
+    assertArrayEquals(new int[]{0, 4, 2, 1, 3, 5}, set.groupedOrder(1, 2));
+    assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5}, set.groupedOrder());
+    assertArrayEquals(new int[0], new IntTupleSet(2).groupedOrder(1));
+  }
+}
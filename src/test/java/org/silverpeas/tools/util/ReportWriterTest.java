@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2000 - 2015 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of
+ * the GPL, you may redistribute this Program in connection with Free/Libre
+ * Open Source Software ("FLOSS") applications as described in Silverpeas's
+ * FLOSS exception. You should have recieved a copy of the text describing
+ * the FLOSS exception, and it is also available here:
+ * "http://www.silverpeas.org/docs/core/legal/floss_exception.html"
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.tools.util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReportWriterTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void flushingWritesIntoTheWrappedOutput() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ReportWriter writer =
+        new ReportWriter(new BufferedOutputStream(bytes, 8192), StandardCharsets.UTF_8);
+    writer.append("kmelia").append(12).append(' ').append("été");
+    writer.flush();
+    assertEquals("kmelia12 été", new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    writer.close();
+  }
+
+  @Test
+  public void anAppendedFileFollowsTheBufferedCharacters() throws IOException {
+    File file = folder.newFile("part.txt");
+    FileUtils.writeStringToFile(file, "second\n", StandardCharsets.UTF_8);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ReportWriter writer = new ReportWriter(new BufferedOutputStream(bytes),
+        StandardCharsets.UTF_8)) {
+      writer.append("first\n").appendFile(file).appendValues(Arrays.asList("a", "b"));
+    }
+    assertEquals("first\nsecond\na, b", new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+  }
+}